@@ -1,6 +1,7 @@
 package org.dbug;
 
 import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
 
 import org.qommons.collect.QuickSet.QuickMap;
 
@@ -12,13 +13,77 @@ public interface DBugAnchor<T> {
 
 	boolean isActive();
 
+	/**
+	 * Allows code to avoid computing expensive event values for events that would be ignored
+	 * 
+	 * @param event The event type to check
+	 * @return Whether any active config is currently interested in the given event on this anchor
+	 */
+	boolean isSubscribed(DBugEventHandle<T> event);
+
 	QuickMap<String, Object> getStaticValues();
 
 	QuickMap<String, Object> getDynamicValues();
 
 	<P> P setDynamicValue(String property, P value);
 
+	/**
+	 * Like {@link #setDynamicValue(String, Object)}, but without looking up the field by name
+	 * 
+	 * @param fieldIndex The index of the field in the type's {@link DBugAnchorType#getDynamicFields() dynamic fields}
+	 * @param value The value for the field
+	 * @return The previous value of the field
+	 */
+	<P> P setDynamicValue(int fieldIndex, P value);
+
 	<P> DBugAnchor<T> modifyDynamicValue(String property, Function<? super P, ? extends P> map);
 
+	DBugAnchorUpdate<T> updates();
+
+	/**
+	 * Atomically adds to an integral dynamic value without locking the anchor. Re-evaluation of any configured conditions or variables
+	 * that depend on the field, as well as {@link DBugEventType.StandardEvents#VALUE_UPDATE} events, are coalesced and deferred.
+	 * 
+	 * @param property The name of the integral dynamic field to modify
+	 * @param delta The amount to add to the field
+	 * @return The new value of the field
+	 * @throws IllegalArgumentException If the field's type is not integral (long, int, short, or byte), it holds a non-integral value, or
+	 *         the result would overflow the field's type. Values never wrap around; on overflow the field is left unchanged.
+	 */
+	long add(String property, long delta);
+
+	default long increment(String property) {
+		return add(property, 1);
+	}
+
+	/**
+	 * Like {@link #add(String, long)}, but with an arbitrary (side-effect-free) operation
+	 * 
+	 * @param property The name of the integral dynamic field to modify
+	 * @param value The value to combine with the field's current value
+	 * @param op The operation to combine the current value with the given value
+	 * @return The new value of the field
+	 * @throws IllegalArgumentException If the field's type is not integral (long, int, short, or byte), it holds a non-integral value, or
+	 *         the result would overflow the field's type. Values never wrap around; on overflow the field is left unchanged.
+	 */
+	long accumulate(String property, long value, LongBinaryOperator op);
+
 	DBugEventBuilder event(String eventName);
+
+	DBugEventBuilder event(DBugEventHandle<T> event);
+
+	/*
+	 * The fire methods fire an event that is not transactional without creating a builder.
+	 * Values are given in the order in which the event's fields were declared.
+	 */
+
+	void fire(DBugEventHandle<T> event);
+
+	void fire(DBugEventHandle<T> event, Object value0);
+
+	void fire(DBugEventHandle<T> event, Object value0, Object value1);
+
+	void fire(DBugEventHandle<T> event, Object value0, Object value1, Object value2);
+
+	void fire(DBugEventHandle<T> event, Object... values);
 }
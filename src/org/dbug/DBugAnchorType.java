@@ -1,5 +1,7 @@
 package org.dbug;
 
+import java.util.List;
+
 import org.qommons.collect.QuickSet.QuickMap;
 
 public interface DBugAnchorType<T> {
@@ -10,5 +12,22 @@ public interface DBugAnchorType<T> {
 	QuickMap<String, DBugParameterType<T, ?>> getDynamicFields();
 	QuickMap<String, DBugEventType<T>> getEventTypes();
 
+	/**
+	 * @param eventName The name of the event
+	 * @return A handle by which events of the given type may be fired efficiently
+	 * @throws IllegalArgumentException If this anchor type declares no such event
+	 */
+	DBugEventHandle<T> eventHandle(String eventName) throws IllegalArgumentException;
+
 	DBugAnchorBuilder<T> debug(T value);
+
+	/**
+	 * Creates or retrieves anchors for many values at once. The anchor type's configs are resolved once for the whole batch rather than
+	 * once per value. This may only be used for anchor types with no externally-specified fields.
+	 * 
+	 * @param values The values to create anchors for
+	 * @return The anchors for each value, in the same order
+	 * @throws IllegalStateException If this anchor type has any externally-specified fields
+	 */
+	List<DBugAnchor<T>> debugAll(Iterable<? extends T> values) throws IllegalStateException;
 }
@@ -0,0 +1,13 @@
+package org.dbug;
+
+/**
+ * Batches changes to several dynamic values of an anchor so that configured conditions and variables are re-evaluated once and only a
+ * single {@link DBugEventType.StandardEvents#VALUE_UPDATE} event is fired for all of them
+ * 
+ * @param <T> The type of the anchor's value
+ */
+public interface DBugAnchorUpdate<T> {
+	<P> DBugAnchorUpdate<T> set(String property, P value);
+
+	DBugAnchor<T> commit();
+}
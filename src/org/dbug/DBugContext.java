@@ -0,0 +1,218 @@
+package org.dbug;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.qommons.Transaction;
+
+/**
+ * The stack of transactional DBug events (see {@link DBugEventBuilder#begin()}) and reporter state enclosing the current code.
+ *
+ * Frames are immutable and linked to their parent, so a context can be {@link #capture() captured} cheaply on one thread and
+ * {@link #activate() activated} on another, e.g. by the {@link #wrap(Runnable) wrap} methods for tasks handed to executors or
+ * {@link java.util.concurrent.CompletableFuture}s. Events begun in the task are then nested under the events enclosing the code that
+ * submitted it.
+ *
+ * All DBug state for a thread is held by a single thread-local, rather than one per reporter, which keeps the per-thread footprint small
+ * when there are very many (e.g. virtual) threads.
+ */
+public final class DBugContext {
+	/** The owner of the frames pushed for transactional events, whose values are {@link EventIds} */
+	private static final Object EVENT = new Object() {
+		@Override
+		public String toString() {
+			return "event";
+		}
+	};
+
+	private static final ThreadLocal<DBugContext> CURRENT = ThreadLocal.withInitial(() -> new DBugContext(null));
+
+	private Frame theTop;
+
+	private DBugContext(Frame top) {
+		theTop = top;
+	}
+
+	/**
+	 * @param owner The owner of the frame, typically a reporter, by which the frame may be {@link #find(Object) found}
+	 * @param value The value for the frame
+	 * @return A transaction to close to remove the frame. The frame may be closed on a different thread or out of order.
+	 */
+	public static Transaction push(Object owner, Object value) {
+		DBugContext context = CURRENT.get();
+		Frame frame = new Frame(context.theTop, owner, value);
+		context.theTop = frame;
+		return frame;
+	}
+
+	/**
+	 * @param owner The owner of the frame to find
+	 * @return The value of the innermost open frame in the current context with the given owner, or null if there is none
+	 */
+	public static Object find(Object owner) {
+		Frame frame = CURRENT.get().theTop;
+		for (; frame != null; frame = frame.parent) {
+			if (frame.owner == owner && !frame.isClosed)
+				return frame.value;
+		}
+		return null;
+	}
+
+	/**
+	 * @param owner The owner of the frames to count
+	 * @return The number of open frames in the current context with the given owner
+	 */
+	public static int depth(Object owner) {
+		int depth = 0;
+		for (Frame frame = CURRENT.get().theTop; frame != null; frame = frame.parent) {
+			if (frame.owner == owner && !frame.isClosed)
+				depth++;
+		}
+		return depth;
+	}
+
+	/**
+	 * Pushes a frame for a transactional event, under which events created in this context will be nested. Only the event's IDs are kept,
+	 * since the event itself may be re-used after it finishes.
+	 *
+	 * @param event The event that has begun
+	 * @return A transaction to close when the event ends
+	 */
+	public static Transaction pushEvent(DBugEvent<?> event) {
+		return push(EVENT, new EventIds(event.getEventId(), event.getTraceId()));
+	}
+
+	/** @return The ID of the innermost transactional event in the current context, or -1 if there is none */
+	public static long currentEventId() {
+		EventIds ids = (EventIds) find(EVENT);
+		return ids == null ? -1 : ids.eventId;
+	}
+
+	/** @return The trace ID of the innermost transactional event in the current context, or -1 if there is none */
+	public static long currentTraceId() {
+		EventIds ids = (EventIds) find(EVENT);
+		return ids == null ? -1 : ids.traceId;
+	}
+
+	/**
+	 * @return A snapshot of the current thread's context, which may be {@link #activate() activated} on another thread. Frames closed
+	 *         after the capture remain in the snapshot, so e.g. a task that runs after the code that submitted it has finished is still
+	 *         nested under the events that enclosed the submission.
+	 */
+	public static DBugContext capture() {
+		return new DBugContext(openFrames(CURRENT.get().theTop));
+	}
+
+	private static Frame openFrames(Frame top) {
+		while (top != null && top.isClosed)
+			top = top.parent;
+		if (top == null)
+			return null;
+		return new Frame(openFrames(top.parent), top.owner, top.value);
+	}
+
+	/**
+	 * Makes this captured context the current thread's context
+	 *
+	 * @return A transaction to close to restore the thread's previous context
+	 */
+	public Transaction activate() {
+		DBugContext context = CURRENT.get();
+		Frame old = context.theTop;
+		context.theTop = theTop;
+		return () -> context.theTop = old;
+	}
+
+	/**
+	 * @param task The task to wrap
+	 * @return A runnable that runs the task in the current context
+	 */
+	public static Runnable wrap(Runnable task) {
+		DBugContext captured = capture();
+		if (captured.theTop == null)
+			return task;
+		return () -> {
+			try (Transaction t = captured.activate()) {
+				task.run();
+			}
+		};
+	}
+
+	/**
+	 * For {@link java.util.concurrent.ExecutorService#submit(Callable)} and the like
+	 *
+	 * @param task The task to wrap
+	 * @return A callable that runs the task in the current context
+	 */
+	public static <T> Callable<T> wrapCallable(Callable<T> task) {
+		DBugContext captured = capture();
+		if (captured.theTop == null)
+			return task;
+		return () -> {
+			try (Transaction t = captured.activate()) {
+				return task.call();
+			}
+		};
+	}
+
+	/**
+	 * For {@link java.util.concurrent.CompletableFuture#supplyAsync(Supplier, Executor)} and the like
+	 *
+	 * @param task The task to wrap
+	 * @return A supplier that runs the task in the current context
+	 */
+	public static <T> Supplier<T> wrapSupplier(Supplier<T> task) {
+		DBugContext captured = capture();
+		if (captured.theTop == null)
+			return task;
+		return () -> {
+			try (Transaction t = captured.activate()) {
+				return task.get();
+			}
+		};
+	}
+
+	/**
+	 * @param executor The executor to wrap
+	 * @return An executor that runs each task in the context of the code that submitted it
+	 */
+	public static Executor wrapExecutor(Executor executor) {
+		return task -> executor.execute(wrap(task));
+	}
+
+	private static class EventIds {
+		final long eventId;
+		final long traceId;
+
+		EventIds(long eventId, long traceId) {
+			this.eventId = eventId;
+			this.traceId = traceId;
+		}
+	}
+
+	private static class Frame implements Transaction {
+		final Frame parent;
+		final Object owner;
+		final Object value;
+		volatile boolean isClosed;
+
+		Frame(Frame parent, Object owner, Object value) {
+			this.parent = parent;
+			this.owner = owner;
+			this.value = value;
+		}
+
+		@Override
+		public void close() {
+			isClosed = true;
+			DBugContext context = CURRENT.get();
+			if (context.theTop != this)
+				return; // Closed out of order or on another thread. Skipped over when the frames above it are closed.
+			Frame top = parent;
+			while (top != null && top.isClosed)
+				top = top.parent;
+			context.theTop = top;
+		}
+	}
+}
@@ -9,6 +9,12 @@ public interface DBugEvent<A> {
 
 	long getEventId();
 
+	/** @return The ID of the transactional event that enclosed this event's creation (see {@link DBugContext}), or -1 if there was none */
+	long getParentEventId();
+
+	/** @return The ID of the outermost event enclosing this one, or this event's own ID if it has no parent */
+	long getTraceId();
+
 	DBugEventType<A> getType();
 
 	DBugAnchor<A> getAnchor();
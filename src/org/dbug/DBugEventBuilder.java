@@ -9,6 +9,13 @@ public interface DBugEventBuilder {
 
 	DBugEventBuilder with(String property, Supplier<?> value);
 
+	/**
+	 * @param fieldIndex The positional index of the field, from {@link DBugEventHandle#getFieldIndex(String)}
+	 * @param value The value for the field
+	 * @return This builder
+	 */
+	DBugEventBuilder with(int fieldIndex, Object value);
+
 	Transaction begin();
 
 	void occurred();
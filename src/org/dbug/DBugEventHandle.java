@@ -0,0 +1,23 @@
+package org.dbug;
+
+/**
+ * A pre-resolved reference to an event type of an anchor type, obtained from {@link DBugAnchorType#eventHandle(String)}. Events may be
+ * fired with a handle via {@link DBugAnchor#fire(DBugEventHandle, Object...)} without any by-name lookups.
+ * 
+ * @param <T> The type of the anchor's value
+ */
+public interface DBugEventHandle<T> {
+	DBugEventType<T> getEventType();
+
+	/** @return The number of fields that must be specified to fire the event */
+	int getFieldCount();
+
+	/**
+	 * @param fieldName The name of the event field
+	 * @return The positional index of the field, i.e. its position in the order in which the event's fields were declared. This is the
+	 *         order in which values are given to {@link DBugAnchor#fire(DBugEventHandle, Object...)} and to
+	 *         {@link DBugEventBuilder#with(int, Object)}.
+	 * @throws IllegalArgumentException If the event has no such field
+	 */
+	int getFieldIndex(String fieldName) throws IllegalArgumentException;
+}
@@ -0,0 +1,18 @@
+package org.dbug;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method (or all methods of a type) as pure for the purposes of DBug expressions: given the same target and arguments, the
+ * method always returns the same result and has no side effects. DBug may evaluate a pure method once per anchor instead of once per
+ * event.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+public @interface DBugPure {
+}
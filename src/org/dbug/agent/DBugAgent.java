@@ -0,0 +1,191 @@
+package org.dbug.agent;
+
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.dbug.config.DBugConfigTemplate;
+import org.dbug.impl.DBugConfigSet;
+import org.qommons.config.QommonsConfig;
+
+/**
+ * A java agent that instruments methods of classes declared with &lt;weave> elements in the DBug config, so that each invocation of the
+ * method fires a DBug event on the instance. This allows events to be debugged on classes that do not declare DBug anchors in their
+ * source.
+ *
+ * The config location may be passed as the agent argument, e.g. <code>-javaagent:dbug.jar=dbug-config.xml</code>, or else is taken from
+ * the same system property that DBug uses.
+ *
+ * If the JVM supports retransformation, only methods whose events are actually configured by a config template are instrumented. As the
+ * DBug config changes, classes are retransformed to add or remove probes, so code that is not being debugged contains no DBug calls.
+ * Otherwise, all methods declared in &lt;weave> elements are instrumented as their classes are loaded.
+ */
+public class DBugAgent {
+	/** Same as DBug's config property, but referenced without initializing DBug before the application starts */
+	private static final String CONFIG_PROPERTY = "org.dbug.DBug.config";
+
+	private static Instrumentation theInstrumentation;
+	private static DBugWeaver theWeaver;
+	private static Map<String, WovenClass> theClasses;
+
+	public static void premain(String agentArgs, Instrumentation inst) {
+		install(agentArgs, inst);
+	}
+
+	public static void agentmain(String agentArgs, Instrumentation inst) {
+		install(agentArgs, inst);
+	}
+
+	private static synchronized void install(String agentArgs, Instrumentation inst) {
+		if (theWeaver != null)
+			return;
+		String configLocation;
+		if (agentArgs != null && agentArgs.length() > 0) {
+			configLocation = agentArgs;
+			if (System.getProperty(CONFIG_PROPERTY) == null)
+				System.setProperty(CONFIG_PROPERTY, configLocation);
+		} else
+			configLocation = System.getProperty(CONFIG_PROPERTY);
+		if (configLocation == null) {
+			System.err.println("DBug agent: No config specified. Use -javaagent:dbug.jar=<config> or -D" + CONFIG_PROPERTY + "=<config>");
+			return;
+		}
+		QommonsConfig config;
+		try {
+			URL configUrl = QommonsConfig.toUrl(configLocation);
+			config = QommonsConfig.fromXml(configUrl);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("DBug agent: Could not read config " + configLocation);
+			e.printStackTrace();
+			return;
+		}
+		boolean retransform = inst.isRetransformClassesSupported();
+		Map<String, WovenClass> classes = parseWeaves(config, Collections.emptyMap());
+		if (classes.isEmpty() && !retransform)
+			return; // Nothing to weave now, and nothing could be woven later
+		Map<String, List<WovenMethod>> methods;
+		if (retransform) {
+			// DBug hasn't read the config yet, so find the configured events here
+			Set<String> configuredEvents = new HashSet<>();
+			for (QommonsConfig c : config.subConfigs()) {
+				if (DBugConfigSet.NON_TEMPLATE_ELEMENTS.contains(c.getName()))
+					continue;
+				for (QommonsConfig evtConfig : c.subConfigs("event"))
+					configuredEvents.add(WovenMethod.eventKey(c.get("schema"), c.get("class"), evtConfig.get("name")));
+			}
+			methods = getWovenMethods(classes, configuredEvents);
+		} else
+			methods = getWovenMethods(classes, null);
+		theInstrumentation = inst;
+		theClasses = classes;
+		theWeaver = new DBugWeaver(methods);
+		inst.addTransformer(theWeaver, retransform);
+		if (retransform)
+			DBugConfigSet.addConfigListener(DBugAgent::configChanged);
+	}
+
+	/**
+	 * Registered with DBug's config to be called whenever it is read. Adds probes to loaded classes whose woven events have become configured and removes
+	 * them from classes whose events no longer are. Does nothing if the agent is not installed or the JVM does not support
+	 * retransformation.
+	 *
+	 * @param config The new DBug config, or null if DBug has been un-configured
+	 * @param templates The config templates now in effect
+	 */
+	private static synchronized void configChanged(QommonsConfig config, Collection<DBugConfigTemplate> templates) {
+		if (theWeaver == null || !theInstrumentation.isRetransformClassesSupported())
+			return;
+		Map<String, WovenClass> classes = config == null ? Collections.emptyMap() : parseWeaves(config, theClasses);
+		Set<String> configuredEvents = new HashSet<>();
+		for (DBugConfigTemplate template : templates) {
+			for (String eventName : template.getEvents().keySet())
+				configuredEvents.add(WovenMethod.eventKey(template.getSchema(), template.getClassName(), eventName));
+		}
+		Map<String, List<WovenMethod>> oldMethods = theWeaver.getMethods();
+		Map<String, List<WovenMethod>> newMethods = getWovenMethods(classes, configuredEvents);
+		Set<String> changed = new HashSet<>();
+		for (String className : oldMethods.keySet()) {
+			if (!Objects.equals(oldMethods.get(className), newMethods.get(className)))
+				changed.add(className);
+		}
+		for (String className : newMethods.keySet()) {
+			if (!oldMethods.containsKey(className))
+				changed.add(className);
+		}
+		theClasses = classes;
+		theWeaver.setMethods(newMethods);
+		if (changed.isEmpty())
+			return;
+
+		List<Class<?>> toRetransform = new ArrayList<>();
+		for (Class<?> loaded : theInstrumentation.getAllLoadedClasses()) {
+			if (changed.contains(loaded.getName()) && theInstrumentation.isModifiableClass(loaded))
+				toRetransform.add(loaded);
+		}
+		if (toRetransform.isEmpty())
+			return; // Not loaded yet. The weaver will handle them when they are.
+		try {
+			theInstrumentation.retransformClasses(toRetransform.toArray(new Class[toRetransform.size()]));
+		} catch (UnmodifiableClassException | RuntimeException e) {
+			System.err.println("DBug agent: Could not retransform " + toRetransform);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @param config The DBug config
+	 * @param oldClasses The classes parsed from the previous config, re-used where their &lt;weave> elements are unchanged so that their
+	 *        probes and anchor types are preserved
+	 * @return The woven classes declared in the config, by class name
+	 */
+	private static Map<String, WovenClass> parseWeaves(QommonsConfig config, Map<String, WovenClass> oldClasses) {
+		Map<String, WovenClass> classes = new LinkedHashMap<>();
+		for (QommonsConfig weaveConfig : config.subConfigs("weave")) {
+			WovenClass old = oldClasses.get(weaveConfig.get("class"));
+			if (old != null && old.getConfig().equals(weaveConfig)) {
+				classes.put(old.getClassName(), old);
+				continue;
+			}
+			try {
+				WovenClass woven = WovenClass.parse(weaveConfig);
+				classes.put(woven.getClassName(), woven);
+			} catch (IllegalArgumentException e) {
+				System.err.println("DBug agent: " + e.getMessage());
+			}
+		}
+		return classes;
+	}
+
+	/**
+	 * @param classes The woven classes
+	 * @param configuredEvents The keys of all configured events, or null to weave all methods
+	 * @return The methods to weave, by class name
+	 */
+	private static Map<String, List<WovenMethod>> getWovenMethods(Map<String, WovenClass> classes, Set<String> configuredEvents) {
+		Map<String, List<WovenMethod>> methods = new LinkedHashMap<>();
+		for (WovenClass woven : classes.values()) {
+			List<WovenMethod> classMethods = new ArrayList<>(woven.getMethods().size());
+			for (WovenMethod method : woven.getMethods()) {
+				if (configuredEvents == null || method.isReferenced(configuredEvents))
+					classMethods.add(method);
+			}
+			if (!classMethods.isEmpty())
+				methods.put(woven.getClassName(), Collections.unmodifiableList(classMethods));
+		}
+		return Collections.unmodifiableMap(methods);
+	}
+
+	private DBugAgent() {
+		throw new IllegalStateException("Not instantiable");
+	}
+}
@@ -0,0 +1,51 @@
+package org.dbug.agent;
+
+import org.qommons.Transaction;
+
+/**
+ * The entry points called from instrumented code. Each woven method calls {@link #enter(int, Object)} on entry and
+ * {@link #exit(Transaction)} on every exit, normal or exceptional. Errors in DBug are reported but never propagated to the application.
+ */
+public class DBugProbes {
+	private static volatile WovenMethod[] PROBES = new WovenMethod[0];
+
+	static synchronized int register(WovenMethod method) {
+		WovenMethod[] probes = PROBES;
+		WovenMethod[] newProbes = new WovenMethod[probes.length + 1];
+		System.arraycopy(probes, 0, newProbes, 0, probes.length);
+		newProbes[probes.length] = method;
+		PROBES = newProbes;
+		return probes.length;
+	}
+
+	/**
+	 * @param probeId The ID of the woven method being entered
+	 * @param target The instance the method was invoked on
+	 * @return The transaction to pass to {@link #exit(Transaction)}, or null if the anchor is not being debugged
+	 */
+	public static Transaction enter(int probeId, Object target) {
+		WovenMethod method = PROBES[probeId];
+		try {
+			return method.enter(target);
+		} catch (RuntimeException e) {
+			method.error(e);
+			return null;
+		}
+	}
+
+	/** @param transaction The transaction returned from {@link #enter(int, Object)} */
+	public static void exit(Transaction transaction) {
+		if (transaction == null)
+			return;
+		try {
+			transaction.close();
+		} catch (RuntimeException e) {
+			System.err.println("Error closing DBug probe");
+			e.printStackTrace();
+		}
+	}
+
+	private DBugProbes() {
+		throw new IllegalStateException("Not instantiable");
+	}
+}
@@ -0,0 +1,212 @@
+package org.dbug.agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.AdviceAdapter;
+import org.objectweb.asm.commons.Method;
+
+/**
+ * Instruments the methods configured in {@link WovenClass}es so that each invocation is wrapped in a DBug event on the instance. Only the
+ * methods given to this weaver are instrumented. Classes with no such methods are not touched, so when a class is retransformed after
+ * its methods are removed, it reverts to its original code.
+ */
+class DBugWeaver implements ClassFileTransformer {
+	private static final Type PROBES = Type.getType(DBugProbes.class);
+	private static final Type TRANSACTION = Type.getObjectType("org/qommons/Transaction");
+	private static final Method ENTER = new Method("enter", TRANSACTION, new Type[] { Type.INT_TYPE, Type.getType(Object.class) });
+	private static final Method EXIT = new Method("exit", Type.VOID_TYPE, new Type[] { TRANSACTION });
+
+	/** The methods to weave, by class name */
+	private volatile Map<String, List<WovenMethod>> theMethods;
+
+	DBugWeaver(Map<String, List<WovenMethod>> methods) {
+		theMethods = methods;
+	}
+
+	Map<String, List<WovenMethod>> getMethods() {
+		return theMethods;
+	}
+
+	void setMethods(Map<String, List<WovenMethod>> methods) {
+		theMethods = methods;
+	}
+
+	@Override
+	public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain,
+		byte[] classfileBuffer) {
+		if (className == null)
+			return null;
+		List<WovenMethod> methods = theMethods.get(className.replace('/', '.'));
+		if (methods == null || methods.isEmpty())
+			return null;
+		try {
+			ClassReader reader = new ClassReader(classfileBuffer);
+			ClassWriter writer = new LoaderClassWriter(reader, loader);
+			WeavingClassVisitor visitor = new WeavingClassVisitor(writer, methods);
+			reader.accept(visitor, ClassReader.EXPAND_FRAMES);
+			return visitor.wovenCount > 0 ? writer.toByteArray() : null;
+		} catch (RuntimeException e) {
+			System.err.println("Could not weave DBug probes into " + className);
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Computes frames using the class hierarchy as read from class files in the loader being transformed for. The default implementation
+	 * loads the classes, which mustn't happen while transforming, and which may not be possible from DBug's class loader anyway.
+	 */
+	private static class LoaderClassWriter extends ClassWriter {
+		private static final String OBJECT = "java/lang/Object";
+
+		private final ClassReader theReader;
+		private final ClassLoader theLoader;
+		/** Super class (or null for interfaces) by type, read as needed */
+		private final Map<String, String> theSuperClasses;
+
+		LoaderClassWriter(ClassReader reader, ClassLoader loader) {
+			super(reader, ClassWriter.COMPUTE_FRAMES);
+			theReader = reader;
+			theLoader = loader;
+			theSuperClasses = new HashMap<>();
+		}
+
+		@Override
+		protected String getCommonSuperClass(String type1, String type2) {
+			if (type1.equals(type2))
+				return type1;
+			if (type1.startsWith("[") || type2.startsWith("["))
+				return OBJECT;
+			List<String> hierarchy1 = new ArrayList<>();
+			for (String type = type1; type != null; type = getSuperClass(type)) {
+				if (type.equals(type2))
+					return type2;
+				hierarchy1.add(type);
+			}
+			if (getSuperClass(type2) == null) // Interface
+				return OBJECT;
+			for (String type = getSuperClass(type2); type != null; type = getSuperClass(type)) {
+				if (hierarchy1.contains(type))
+					return type;
+			}
+			return OBJECT;
+		}
+
+		/**
+		 * @param type The internal name of the type
+		 * @return The internal name of the type's super class, or null if the type is an interface or java/lang/Object
+		 * @throws TypeNotPresentException If the type's class file can't be found, since frames computed without it may be wrong
+		 */
+		private String getSuperClass(String type) {
+			if (type.equals(OBJECT))
+				return null;
+			if (theSuperClasses.containsKey(type))
+				return theSuperClasses.get(type);
+			ClassReader reader;
+			if (type.equals(theReader.getClassName()))
+				reader = theReader;
+			else {
+				String resource = type + ".class";
+				try (InputStream in = theLoader != null ? theLoader.getResourceAsStream(resource)
+					: ClassLoader.getSystemResourceAsStream(resource)) {
+					if (in == null)
+						throw new TypeNotPresentException(type.replace('/', '.'), null);
+					reader = new ClassReader(in);
+				} catch (IOException e) {
+					throw new TypeNotPresentException(type.replace('/', '.'), e);
+				}
+			}
+			String superClass = (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0 ? null : reader.getSuperName();
+			theSuperClasses.put(type, superClass);
+			return superClass;
+		}
+	}
+
+	private static class WeavingClassVisitor extends ClassVisitor {
+		private final List<WovenMethod> theWovenMethods;
+		int wovenCount;
+
+		WeavingClassVisitor(ClassVisitor cv, List<WovenMethod> methods) {
+			super(Opcodes.ASM9, cv);
+			theWovenMethods = methods;
+		}
+
+		@Override
+		public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+			MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
+			// Events are on the instance, so only instance methods with bodies can be woven
+			if ((access & (Opcodes.ACC_STATIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0 || name.equals("<clinit>"))
+				return mv;
+			WovenMethod method = null;
+			for (WovenMethod m : theWovenMethods) {
+				if (m.matches(name, descriptor)) {
+					method = m;
+					break;
+				}
+			}
+			if (method == null)
+				return mv;
+			wovenCount++;
+			return new WeavingMethodVisitor(mv, access, name, descriptor, method.getProbeId());
+		}
+	}
+
+	private static class WeavingMethodVisitor extends AdviceAdapter {
+		private final int theProbeId;
+		private final Label theStart;
+		private int theTransactionLocal;
+
+		WeavingMethodVisitor(MethodVisitor mv, int access, String name, String descriptor, int probeId) {
+			super(Opcodes.ASM9, mv, access, name, descriptor);
+			theProbeId = probeId;
+			theStart = new Label();
+		}
+
+		@Override
+		protected void onMethodEnter() {
+			push(theProbeId);
+			loadThis();
+			invokeStatic(PROBES, ENTER);
+			theTransactionLocal = newLocal(TRANSACTION);
+			storeLocal(theTransactionLocal);
+			mark(theStart);
+		}
+
+		@Override
+		protected void onMethodExit(int opcode) {
+			// Thrown exceptions are handled by the catch-all block added in visitMaxs
+			if (opcode != ATHROW)
+				closeTransaction();
+		}
+
+		@Override
+		public void visitMaxs(int maxStack, int maxLocals) {
+			// Added after the method's own try/catch blocks so that it doesn't pre-empt them
+			Label handler = new Label();
+			mark(handler);
+			visitTryCatchBlock(theStart, handler, handler, null);
+			closeTransaction();
+			throwException();
+			super.visitMaxs(maxStack, maxLocals);
+		}
+
+		private void closeTransaction() {
+			loadLocal(theTransactionLocal);
+			invokeStatic(PROBES, EXIT);
+		}
+	}
+}
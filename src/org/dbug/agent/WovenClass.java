@@ -0,0 +1,108 @@
+package org.dbug.agent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.dbug.DBug;
+import org.dbug.DBugAnchorType;
+import org.dbug.DBugEventHandle;
+import org.qommons.config.QommonsConfig;
+
+/** A class whose methods are configured (via a &lt;weave> element in the DBug config) to be instrumented with DBug events */
+class WovenClass {
+	private final QommonsConfig theConfig;
+	private final String theClassName;
+	private final String theSchema;
+	private final List<WovenMethod> theMethods;
+	private final ClassValue<WovenType> theTypes;
+
+	WovenClass(QommonsConfig config, String className, String schema, List<WovenMethod> methods) {
+		theConfig = config;
+		theClassName = className;
+		theSchema = schema;
+		theMethods = methods;
+		theTypes = new ClassValue<WovenType>() {
+			@Override
+			protected WovenType computeValue(Class<?> type) {
+				for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+					if (c.getName().equals(theClassName))
+						return new WovenType(declare(c));
+				}
+				return null;
+			}
+		};
+	}
+
+	/** @return The &lt;weave> element this class was parsed from */
+	QommonsConfig getConfig() {
+		return theConfig;
+	}
+
+	String getClassName() {
+		return theClassName;
+	}
+
+	String getSchema() {
+		return theSchema;
+	}
+
+	List<WovenMethod> getMethods() {
+		return theMethods;
+	}
+
+	/**
+	 * @param targetClass The class of an instance of a woven method's class
+	 * @return The anchor type for the woven class, or null if the target class is not a sub-type of the woven class
+	 */
+	WovenType getType(Class<?> targetClass) {
+		return theTypes.get(targetClass);
+	}
+
+	private DBugAnchorType<Object> declare(Class<?> type) {
+		Set<String> events = new LinkedHashSet<>();
+		for (WovenMethod method : theMethods)
+			events.add(method.getEventName());
+		return DBug.declare(theSchema, (Class<Object>) type, builder -> {
+			for (String event : events)
+				builder.withEvent(event, eb -> {});
+			return builder;
+		});
+	}
+
+	@Override
+	public String toString() {
+		return theSchema + ":" + theClassName;
+	}
+
+	static WovenClass parse(QommonsConfig config) throws IllegalArgumentException {
+		String className = config.get("class");
+		String schema = config.get("schema");
+		if (className == null || schema == null)
+			throw new IllegalArgumentException("Weave declared with no schema or class name");
+		List<WovenMethod> methods = new ArrayList<>();
+		WovenClass woven = new WovenClass(config, className, schema, Collections.unmodifiableList(methods));
+		for (QommonsConfig methodConfig : config.subConfigs("method")) {
+			String name = methodConfig.get("name");
+			if (name == null)
+				throw new IllegalArgumentException("Method declared with no name for weave " + className);
+			String event = methodConfig.get("event");
+			methods.add(new WovenMethod(woven, methods.size(), name, methodConfig.get("desc"), event == null ? name : event));
+		}
+		return woven;
+	}
+
+	class WovenType {
+		final DBugAnchorType<Object> anchorType;
+		final DBugEventHandle<Object>[] handles;
+
+		WovenType(DBugAnchorType<Object> anchorType) {
+			this.anchorType = anchorType;
+			handles = new DBugEventHandle[theMethods.size()];
+			for (int i = 0; i < handles.length; i++)
+				handles[i] = anchorType.eventHandle(theMethods.get(i).getEventName());
+		}
+	}
+}
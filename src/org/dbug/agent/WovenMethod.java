@@ -0,0 +1,83 @@
+package org.dbug.agent;
+
+import java.util.Set;
+
+import org.dbug.DBugAnchor;
+import org.qommons.Transaction;
+
+/** A method configured to be instrumented with a DBug event spanning each invocation */
+class WovenMethod {
+	private final WovenClass theClass;
+	private final int theIndex;
+	private final String theName;
+	private final String theDescriptor;
+	private final String theEventName;
+	private int theProbeId;
+	private boolean hasReportedError;
+
+	WovenMethod(WovenClass clazz, int index, String name, String descriptor, String eventName) {
+		theClass = clazz;
+		theIndex = index;
+		theName = name;
+		theDescriptor = descriptor;
+		theEventName = eventName;
+		theProbeId = -1;
+	}
+
+	WovenClass getWovenClass() {
+		return theClass;
+	}
+
+	String getName() {
+		return theName;
+	}
+
+	String getEventName() {
+		return theEventName;
+	}
+
+	/**
+	 * @param configuredEvents The {@link #eventKey(String, String, String) keys} of all events configured in DBug
+	 * @return Whether this method's event is configured on its class
+	 */
+	boolean isReferenced(Set<String> configuredEvents) {
+		return configuredEvents.contains(eventKey(theClass.getSchema(), theClass.getClassName(), theEventName));
+	}
+
+	static String eventKey(String schema, String className, String eventName) {
+		return schema + ":" + className + "." + eventName;
+	}
+
+	boolean matches(String name, String descriptor) {
+		return theName.equals(name) && (theDescriptor == null || theDescriptor.equals(descriptor));
+	}
+
+	synchronized int getProbeId() {
+		if (theProbeId < 0)
+			theProbeId = DBugProbes.register(this);
+		return theProbeId;
+	}
+
+	Transaction enter(Object target) {
+		WovenClass.WovenType type = theClass.getType(target.getClass());
+		if (type == null)
+			return null;
+		DBugAnchor<Object> anchor = type.anchorType.debug(target).build();
+		if (!anchor.isActive())
+			return null;
+		return anchor.event(type.handles[theIndex]).begin();
+	}
+
+	void error(RuntimeException e) {
+		if (hasReportedError)
+			return;
+		hasReportedError = true;
+		System.err.println("Error in DBug probe for " + this);
+		e.printStackTrace();
+	}
+
+	@Override
+	public String toString() {
+		return theClass.getClassName() + "." + theName + (theDescriptor == null ? "" : theDescriptor);
+	}
+}
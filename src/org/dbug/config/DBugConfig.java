@@ -53,6 +53,26 @@ public class DBugConfig<A> {
 		return theTemplate.getReporters();
 	}
 
+	/** Resets the {@link ExpressionErrors error state} of all this config's expressions */
+	public void resetErrors() {
+		for (int i = 0; i < theValues.keySet().size(); i++) {
+			if (theValues.get(i) != null)
+				theValues.get(i).errors.reset();
+		}
+		if (theCondition != null)
+			theCondition.errors.reset();
+		for (int i = 0; i < theEvents.keySet().size(); i++) {
+			for (DBugEventConfig<A> event : theEvents.get(i)) {
+				for (int j = 0; j < event.eventValues.keySet().size(); j++) {
+					if (event.eventValues.get(j) != null)
+						event.eventValues.get(j).errors.reset();
+				}
+				if (event.condition != null)
+					event.condition.errors.reset();
+			}
+		}
+	}
+
 	public Object getReporterCompiledAnchor(int index) {
 		Object anchor = theReporterCompiledAnchors[index];
 		if (anchor == null)
@@ -77,6 +97,8 @@ public class DBugConfig<A> {
 		public final Expression<A, T> expression;
 		public final BitSet dynamicDependencies;
 		public final BitSet configValueDependencies;
+		public final ExpressionErrors errors;
+		public final ExpressionCost cost;
 
 		public DBugConfigValue(DBugConfigTemplateValue template, Expression<A, T> expression, BitSet dynamicDepends,
 			BitSet configVarDepends) {
@@ -84,6 +106,8 @@ public class DBugConfig<A> {
 			this.expression = expression;
 			dynamicDependencies = dynamicDepends;
 			configValueDependencies = configVarDepends;
+			errors = new ExpressionErrors(this);
+			cost = new ExpressionCost(this);
 		}
 
 		@Override
@@ -110,9 +134,19 @@ public class DBugConfig<A> {
 		private final DBugConfig<A>[] theConfig;
 		private final Object[] theEventReporterCompiledAnchors;
 		private final Object[] theReporterCompiledEvents;
-
+		private final int[] theReporterIds;
+
+		/**
+		 * @param template The event template
+		 * @param eventType The configured event type
+		 * @param eventValues The event variables
+		 * @param condition The event condition
+		 * @param config A holder for the config, which is created after its events
+		 * @param reporterIds The ID of each of the template's reporters, unique among the reporters of the anchor type
+		 */
 		public DBugEventConfig(DBugEventConfigTemplate template, DefaultDBugEventType<A> eventType,
-			QuickMap<String, DBugEventValue<A, ?>> eventValues, DBugEventValue<A, Boolean> condition, DBugConfig<A>[] config) {
+			QuickMap<String, DBugEventValue<A, ?>> eventValues, DBugEventValue<A, Boolean> condition, DBugConfig<A>[] config,
+			int[] reporterIds) {
 			this.template = template;
 			this.eventType = eventType;
 			this.eventValues = eventValues;
@@ -120,12 +154,21 @@ public class DBugConfig<A> {
 			theConfig = config;
 			theEventReporterCompiledAnchors = new Object[template.getReporterCount() - template.getTemplate().getReporters().size()];
 			theReporterCompiledEvents = new Object[template.getReporterCount()];
+			theReporterIds = reporterIds;
 		}
 
 		public DBugConfig<A> getConfig() {
 			return theConfig[0];
 		}
 
+		/**
+		 * @param index The index of the reporter in the template
+		 * @return The ID of the reporter in the anchor type
+		 */
+		public int getReporterId(int index) {
+			return theReporterIds[index];
+		}
+
 		public Object getReporterCompiledAnchor(int index) {
 			Object compiledAnchor;
 			int evtRIndex = index - template.getTemplate().getReporters().size();
@@ -167,6 +210,8 @@ public class DBugConfig<A> {
 		public final int varIndex;
 		public final Expression<A, T> expression;
 		public final BitSet eventVariableDependencies;
+		public final ExpressionErrors errors;
+		public final ExpressionCost cost;
 
 		public DBugEventValue(DBugEventType<A> eventType, String varName, int varIndex, Expression<A, T> expression,
 			BitSet eventVariableDependencies) {
@@ -175,6 +220,8 @@ public class DBugConfig<A> {
 			this.varIndex = varIndex;
 			this.expression = expression;
 			this.eventVariableDependencies = eventVariableDependencies;
+			errors = new ExpressionErrors(this);
+			cost = new ExpressionCost(this);
 		}
 
 		@Override
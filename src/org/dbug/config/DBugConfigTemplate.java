@@ -1,6 +1,7 @@
 package org.dbug.config;
 
 import java.util.List;
+import java.util.Objects;
 
 import org.dbug.expression.DBugAntlrExpression;
 import org.qommons.collect.QuickSet.QuickMap;
@@ -13,9 +14,13 @@ public class DBugConfigTemplate {
 	private final DBugAntlrExpression theCondition;
 	private final QuickMap<String, DBugEventConfigTemplate> theEvents;
 	private final List<DBugEventReporter<?, ?, ?, ?, ?>> theReporters;
+	private final long theEvalBudget;
+	private final boolean isAsyncVariables;
+	private final boolean isSampleConditions;
 
 	public DBugConfigTemplate(String id, String schema, String className, QuickMap<String, DBugConfigTemplateValue> values,
-		DBugAntlrExpression condition, List<DBugEventReporter<?, ?, ?, ?, ?>> reporters, QuickMap<String, DBugEventConfigTemplate> events) {
+		DBugAntlrExpression condition, List<DBugEventReporter<?, ?, ?, ?, ?>> reporters, QuickMap<String, DBugEventConfigTemplate> events,
+		long evalBudget, boolean asyncVariables, boolean sampleConditions) {
 		theID = id;
 		theSchema = schema;
 		theClassName = className;
@@ -23,6 +28,9 @@ public class DBugConfigTemplate {
 		theCondition = condition;
 		theReporters = reporters;
 		theEvents = events;
+		theEvalBudget = evalBudget;
+		isAsyncVariables = asyncVariables;
+		isSampleConditions = sampleConditions;
 	}
 
 	public String getID() {
@@ -53,6 +61,51 @@ public class DBugConfigTemplate {
 		return theReporters;
 	}
 
+	/** @return The time (in nanoseconds) that any one of this config's expressions may take on average before it is demoted, or 0 */
+	public long getEvalBudget() {
+		return theEvalBudget;
+	}
+
+	/**
+	 * @return Whether event variables that this config's event conditions don't depend on are evaluated on DBug's reporting thread
+	 *         instead of the thread firing the event
+	 */
+	public boolean isAsyncVariables() {
+		return isAsyncVariables;
+	}
+
+	/**
+	 * @return Whether this config's conditions may be demoted to sampled evaluation like its variables when they exceed the
+	 *         {@link #getEvalBudget() evaluation budget}. Sampling a condition means events or anchors it would have passed are missed.
+	 */
+	public boolean isSampleConditions() {
+		return isSampleConditions;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(theID, theSchema, theClassName, isSampleConditions);
+	}
+
+	/**
+	 * Templates are compared structurally so that an unchanged template in a reloaded config is recognized as such and its parsed
+	 * configuration is kept instead of being re-resolved. Expressions are compared by identity, which works because
+	 * {@link org.dbug.impl.DBugConfigSet} re-uses the compiled expression for unchanged text.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		else if (!(obj instanceof DBugConfigTemplate))
+			return false;
+		DBugConfigTemplate other = (DBugConfigTemplate) obj;
+		return theID.equals(other.theID) && theSchema.equals(other.theSchema) && theClassName.equals(other.theClassName)//
+			&& theEvalBudget == other.theEvalBudget && isAsyncVariables == other.isAsyncVariables
+			&& isSampleConditions == other.isSampleConditions//
+			&& Objects.equals(theCondition, other.theCondition) && theValues.equals(other.theValues)
+			&& theReporters.equals(other.theReporters) && theEvents.equals(other.theEvents);
+	}
+
 	public static class DBugConfigTemplateValue {
 		public final String varName;
 		public final DBugAntlrExpression expression;
@@ -64,6 +117,21 @@ public class DBugConfigTemplate {
 			this.cacheable = cacheable;
 		}
 
+		@Override
+		public int hashCode() {
+			return Objects.hash(varName, expression, cacheable);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			else if (!(obj instanceof DBugConfigTemplateValue))
+				return false;
+			DBugConfigTemplateValue other = (DBugConfigTemplateValue) obj;
+			return varName.equals(other.varName) && Objects.equals(expression, other.expression) && cacheable == other.cacheable;
+		}
+
 		@Override
 		public String toString() {
 			return varName;
@@ -104,5 +172,22 @@ public class DBugConfigTemplate {
 			else
 				return eventReporters.get(erIndex);
 		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(eventName, condition);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			else if (!(obj instanceof DBugEventConfigTemplate))
+				return false;
+			DBugEventConfigTemplate other = (DBugEventConfigTemplate) obj;
+			return eventName.equals(other.eventName) && Objects.equals(condition, other.condition)
+				&& eventVariables.equals(other.eventVariables) && globalReporters.equals(other.globalReporters)
+				&& eventReporters.equals(other.eventReporters);
+		}
 	}
 }
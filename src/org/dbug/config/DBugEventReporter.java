@@ -18,5 +18,15 @@ public interface DBugEventReporter<C, ET, A, CA, E> {
 	void eventOccurred(DBugConfigEvent<?> event, CA compiledAnchor, E compiledEvent);
 	Transaction eventBegun(DBugConfigEvent<?> event, CA compiledAnchor, E compiledEvent);
 
+	/**
+	 * @return Whether this reporter may keep a reference to an event, its compiled representation, or its value maps after
+	 *         {@link #eventOccurred(DBugConfigEvent, Object, Object)} returns or after the transaction returned from
+	 *         {@link #eventBegun(DBugConfigEvent, Object, Object)} is closed. If no reporter for an anchor type retains events, event
+	 *         objects for that type are pooled and re-used.
+	 */
+	default boolean retainsEvents() {
+		return true;
+	}
+
 	void close();
 }
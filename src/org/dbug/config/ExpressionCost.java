@@ -0,0 +1,72 @@
+package org.dbug.config;
+
+import org.dbug.DBug;
+
+/**
+ * Tracks the cost of evaluating a config expression (a condition or variable) against its config's evaluation budget. An expression whose
+ * average cost exceeds the budget is demoted to sampled evaluation, after which it is only evaluated for one in every
+ * {@link #DEMOTED_INTERVAL} events or updates. In between, anchor expressions keep their last value and event variables, whose values
+ * belong to a single event, are reported as null. Conditions are only demoted if their config opts in
+ * (see {@link DBugConfigTemplate#isSampleConditions()}), since skipping them changes what is reported, not just its resolution.
+ *
+ * The counters here are deliberately unsynchronized. A lost update only skews the sampling slightly.
+ */
+public class ExpressionCost {
+	/** Evaluations that are not otherwise timed are timed once in this many evaluations. Must be a power of 2. */
+	public static final int SAMPLE_INTERVAL = 16;
+	/** The interval at which a demoted expression is evaluated */
+	public static final int DEMOTED_INTERVAL = Integer.getInteger(DBug.class.getName() + ".demoted-sample-interval", 100);
+
+	private final Object theExpression;
+	private int theSampleCount;
+	private int theDemotedCount;
+	private volatile long theAverageNanos;
+	private volatile boolean isDemoted;
+
+	/** @param expression The expression (or its config) to describe in messages */
+	public ExpressionCost(Object expression) {
+		theExpression = expression;
+	}
+
+	/** @return Whether the current evaluation should be timed */
+	public boolean shouldTime() {
+		return (++theSampleCount & (SAMPLE_INTERVAL - 1)) == 0;
+	}
+
+	/** @return Whether the expression should be evaluated now, i.e. false if it is demoted and this evaluation is not sampled */
+	public boolean shouldEvaluate() {
+		if (!isDemoted)
+			return true;
+		if (++theDemotedCount < DEMOTED_INTERVAL)
+			return false;
+		theDemotedCount = 0;
+		return true;
+	}
+
+	/**
+	 * @param nanos The time taken by an evaluation of the expression
+	 * @param budgetNanos The evaluation budget of the expression's config, or 0 if it has none
+	 * @return Whether the expression was demoted as a result of this measurement
+	 */
+	public boolean timed(long nanos, long budgetNanos) {
+		long avg = theAverageNanos;
+		// Exponential moving average, so a single slow evaluation (e.g. class loading) doesn't cause demotion
+		avg = avg == 0 ? nanos : avg + (nanos - avg) / 8;
+		theAverageNanos = avg;
+		if (budgetNanos > 0 && avg > budgetNanos && !isDemoted) {
+			isDemoted = true;
+			System.err.println("Evaluating " + theExpression + " takes " + (avg / 1000) + "us on average, over its config's budget of "
+				+ (budgetNanos / 1000) + "us. It will now be evaluated once in every " + DEMOTED_INTERVAL + " times.");
+			return true;
+		}
+		return false;
+	}
+
+	public long getAverageNanos() {
+		return theAverageNanos;
+	}
+
+	public boolean isDemoted() {
+		return isDemoted;
+	}
+}
@@ -0,0 +1,82 @@
+package org.dbug.config;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.dbug.DBug;
+
+/**
+ * Error accounting for a config expression (a condition or variable). Each distinct error is printed with its stack trace only the first
+ * time it occurs, and repeats are summarized at most once per window. If an expression fails {@link #THRESHOLD} times within a
+ * {@link #WINDOW}, it is disabled so that a broken config can't flood the output or burn CPU on every event. Disabled expressions stay
+ * disabled until the config is next reloaded, whether or not it changed (see {@link #reset()}).
+ */
+public class ExpressionErrors {
+	/** The number of errors within a {@link #WINDOW} after which an expression is disabled */
+	public static final int THRESHOLD = Integer.getInteger(DBug.class.getName() + ".expression-error-threshold", 100);
+	/** The time window (in milliseconds) over which errors are counted and repeated errors are summarized */
+	public static final long WINDOW = Long.getLong(DBug.class.getName() + ".expression-error-window", 10000);
+	/** The maximum number of distinct errors to print stack traces for, per expression */
+	private static final int MAX_DISTINCT = 16;
+
+	private final Object theExpression;
+	private final Set<String> theReportedErrors;
+	private volatile boolean isDisabled;
+	private long theWindowStart;
+	private int theWindowErrors;
+	private int theSuppressed;
+	private long theTotalErrors;
+
+	/** @param expression The expression (or its config) to describe in error messages */
+	public ExpressionErrors(Object expression) {
+		theExpression = expression;
+		theReportedErrors = new HashSet<>();
+	}
+
+	/** @return Whether this expression has failed too often and should no longer be evaluated */
+	public boolean isDisabled() {
+		return isDisabled;
+	}
+
+	public synchronized long getErrorCount() {
+		return theTotalErrors;
+	}
+
+	/** Re-enables this expression and forgets the errors already printed, e.g. when the config is reloaded */
+	public synchronized void reset() {
+		if (theSuppressed > 0)
+			System.err.println(theSuppressed + " repeated error(s) evaluating " + theExpression + " suppressed");
+		isDisabled = false;
+		theReportedErrors.clear();
+		theWindowStart = 0;
+		theWindowErrors = 0;
+		theSuppressed = 0;
+	}
+
+	/**
+	 * @param message The message describing the failed evaluation
+	 * @param e The error
+	 */
+	public synchronized void error(String message, Throwable e) {
+		theTotalErrors++;
+		long now = System.currentTimeMillis();
+		if (now - theWindowStart > WINDOW) {
+			if (theSuppressed > 0)
+				System.err.println(theSuppressed + " repeated error(s) evaluating " + theExpression + " suppressed");
+			theWindowStart = now;
+			theWindowErrors = 0;
+			theSuppressed = 0;
+		}
+		theWindowErrors++;
+		if (theReportedErrors.size() < MAX_DISTINCT && theReportedErrors.add(e.getClass().getName() + ": " + e.getMessage())) {
+			System.err.println(message);
+			e.printStackTrace();
+		} else
+			theSuppressed++;
+		if (!isDisabled && theWindowErrors >= THRESHOLD) {
+			isDisabled = true;
+			System.err.println("Disabling " + theExpression + " after " + theWindowErrors + " errors in " + WINDOW + "ms ("
+				+ theSuppressed + " not printed). It will be re-enabled when the config is reloaded.");
+		}
+	}
+}
@@ -2,6 +2,7 @@ package org.dbug.expression;
 
 import java.lang.reflect.Array;
 import java.util.Arrays;
+import java.util.function.Function;
 
 import org.dbug.config.DBugConfiguredAnchor;
 import org.dbug.config.DBugConfigEvent;
@@ -52,6 +53,20 @@ public class ArrayInitializerByValueExpression<A, T> implements Expression<A, T>
 			return this;
 	}
 
+	@Override
+	public Expression<A, ? extends T> transform(Function<Expression<A, ?>, Expression<A, ?>> map) {
+		Expression<A, ?>[] elements = new Expression[theElements.length];
+		boolean anyDiff = false;
+		for (int i = 0; i < elements.length; i++) {
+			elements[i] = map.apply(theElements[i]);
+			anyDiff |= elements[i] != theElements[i];
+		}
+		if (anyDiff)
+			return new ArrayInitializerByValueExpression<>(theType, elements);
+		else
+			return this;
+	}
+
 	@Override
 	public int hashCode() {
 		return theType.hashCode() * 71 + Arrays.hashCode(theElements);
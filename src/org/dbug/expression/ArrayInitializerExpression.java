@@ -2,6 +2,7 @@ package org.dbug.expression;
 
 import java.lang.reflect.Array;
 import java.util.Arrays;
+import java.util.function.Function;
 
 import org.dbug.config.DBugConfiguredAnchor;
 import org.dbug.config.DBugConfigEvent;
@@ -63,6 +64,20 @@ public class ArrayInitializerExpression<A, T> implements Expression<A, T> {
 			return this;
 	}
 
+	@Override
+	public Expression<A, ? extends T> transform(Function<Expression<A, ?>, Expression<A, ?>> map) {
+		Expression<A, ? extends Number>[] sizes = new Expression[theSizes.length];
+		boolean anyDiff = false;
+		for (int s = 0; s < sizes.length; s++) {
+			sizes[s] = (Expression<A, ? extends Number>) map.apply(theSizes[s]);
+			anyDiff |= sizes[s] != theSizes[s];
+		}
+		if (anyDiff)
+			return new ArrayInitializerExpression<>(sizes, theArrayType);
+		else
+			return this;
+	}
+
 	@Override
 	public int hashCode() {
 		return theArrayType.hashCode() * 71 + Arrays.hashCode(theSizes);
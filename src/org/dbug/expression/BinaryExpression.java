@@ -1,5 +1,7 @@
 package org.dbug.expression;
 
+import java.util.function.Function;
+
 import org.dbug.config.DBugConfiguredAnchor;
 import org.dbug.config.DBugConfigEvent;
 
@@ -69,6 +71,16 @@ public abstract class BinaryExpression<T, A, B, X> implements Expression<T, X> {
 			return copy(left, right);
 	}
 
+	@Override
+	public Expression<T, ? extends X> transform(Function<Expression<T, ?>, Expression<T, ?>> map) {
+		Expression<T, ? extends A> left = (Expression<T, ? extends A>) map.apply(theLeft);
+		Expression<T, ? extends B> right = (Expression<T, ? extends B>) map.apply(theRight);
+		if (left == theLeft && right == theRight)
+			return this;
+		else
+			return copy(left, right);
+	}
+
 	protected abstract Expression<T, X> copy(Expression<T, ? extends A> left, Expression<T, ? extends B> right);
 
 	@Override
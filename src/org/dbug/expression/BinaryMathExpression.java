@@ -22,6 +22,10 @@ public class BinaryMathExpression<A, T> extends BinaryExpression<A, Object, Obje
 		isTransitive = transitive;
 	}
 
+	public String getOpName() {
+		return theOpName;
+	}
+
 	@Override
 	protected T evaluate(Object a, Object b) {
 		return theOperation.apply(a, b);
@@ -314,9 +318,9 @@ public class BinaryMathExpression<A, T> extends BinaryExpression<A, Object, Obje
 				else if (maxType == DBugUtils.FLOAT)
 					return number(v1).floatValue() <= number(v2).floatValue();
 				else if (maxType == DBugUtils.LONG)
-					return number(v1).longValue() + number(v2).longValue();
+					return number(v1).longValue() <= number(v2).longValue();
 				else
-					return number(v1).intValue() + number(v2).intValue();
+					return number(v1).intValue() <= number(v2).intValue();
 			};
 			break;
 		default:
@@ -1,5 +1,8 @@
 package org.dbug.expression;
 
+import java.util.Objects;
+import java.util.function.Function;
+
 import org.dbug.config.DBugConfiguredAnchor;
 import org.dbug.config.DBugConfigEvent;
 
@@ -19,6 +22,18 @@ public class ConditionalExpression<A, T> implements Expression<A, T> {
 		theNegative = negative;
 	}
 
+	public Expression<A, Boolean> getCondition() {
+		return theCondition;
+	}
+
+	public Expression<A, ? extends T> getAffirmative() {
+		return theAffirmative;
+	}
+
+	public Expression<A, ? extends T> getNegative() {
+		return theNegative;
+	}
+
 	@Override
 	public TypeToken<T> getResultType() {
 		return theType;
@@ -49,4 +64,35 @@ public class ConditionalExpression<A, T> implements Expression<A, T> {
 			return this;
 		return new ConditionalExpression<>(theType, theCondition, affirmative, negative);
 	}
+
+	@Override
+	public Expression<A, ? extends T> transform(Function<Expression<A, ?>, Expression<A, ?>> map) {
+		Expression<A, Boolean> condition = (Expression<A, Boolean>) map.apply(theCondition);
+		Expression<A, ? extends T> affirmative = (Expression<A, ? extends T>) map.apply(theAffirmative);
+		Expression<A, ? extends T> negative = (Expression<A, ? extends T>) map.apply(theNegative);
+		if (condition == theCondition && affirmative == theAffirmative && negative == theNegative)
+			return this;
+		return new ConditionalExpression<>(theType, condition, affirmative, negative);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(theCondition, theAffirmative, theNegative);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		else if (!(obj instanceof ConditionalExpression))
+			return false;
+		ConditionalExpression<?, ?> other = (ConditionalExpression<?, ?>) obj;
+		return theCondition.equals(other.theCondition) && theAffirmative.equals(other.theAffirmative)
+			&& theNegative.equals(other.theNegative);
+	}
+
+	@Override
+	public String toString() {
+		return theCondition + " ? " + theAffirmative + " : " + theNegative;
+	}
 }
@@ -54,7 +54,13 @@ public class ConfigVariableExpression<A, T> implements Expression<A, T> {
 		if (!(obj instanceof ConfigVariableExpression))
 			return false;
 		ConfigVariableExpression<?, ?> other = (ConfigVariableExpression<?, ?>) obj;
-		return isAnchorConfigVar == other.isAnchorConfigVar && theParameterIndex == other.theParameterIndex;
+		if (isAnchorConfigVar != other.isAnchorConfigVar || theParameterIndex != other.theParameterIndex)
+			return false;
+		// Event variables with the same index in different event configs are different variables
+		else if (isAnchorConfigVar)
+			return (Object) theEnv.getAnchorVariables() == other.theEnv.getAnchorVariables();
+		else
+			return (Object) theEnv.getEventVariables() == other.theEnv.getEventVariables();
 	}
 
 	@Override
@@ -3,6 +3,7 @@ package org.dbug.expression;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
+import java.util.function.Function;
 
 import org.dbug.config.DBugConfiguredAnchor;
 import org.dbug.config.DBugConfigEvent;
@@ -63,6 +64,20 @@ public class ConstructorExpression<A, T> implements Expression<A, T> {
 			return this;
 	}
 
+	@Override
+	public Expression<A, ? extends T> transform(Function<Expression<A, ?>, Expression<A, ?>> map) {
+		Expression<A, ?>[] args = new Expression[theArguments.length];
+		boolean anyDiff = false;
+		for (int a = 0; a < args.length; a++) {
+			args[a] = map.apply(theArguments[a]);
+			anyDiff |= args[a] != theArguments[a];
+		}
+		if (anyDiff)
+			return new ConstructorExpression<>(theType, theConstructor, args);
+		else
+			return this;
+	}
+
 	@Override
 	public int hashCode() {
 		return theType.hashCode() * 71 + Arrays.hashCode(theArguments);
@@ -0,0 +1,94 @@
+package org.dbug.expression;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.dbug.DBugPure;
+
+/**
+ * Decides whether methods invoked from DBug expressions are pure, i.e. always return the same result for the same target and arguments
+ * without side effects. A method is pure if it or its declaring type is annotated with {@link DBugPure}, if it or its declaring class
+ * is in the config's whitelist, or if it is declared by one of the JDK's immutable value types and only takes and returns primitives or
+ * immutable values. Static methods of those types must additionally be known factories or conversions, which excludes e.g.
+ * {@link UUID#randomUUID()} and {@link Integer#getInteger(String)}. Methods returning arrays are only pure if explicitly annotated or
+ * whitelisted, since the caller may modify the array.
+ */
+public class DBugPurity {
+	private static final Set<Class<?>> IMMUTABLE_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(//
+		String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+		BigInteger.class, BigDecimal.class, UUID.class, Enum.class)));
+	/** Static methods of the immutable types that are pure. Names starting with "parse", "to" or "is" are also included. */
+	private static final Set<String> PURE_STATIC_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(//
+		"valueOf", "compare", "compareUnsigned", "hashCode", "max", "min", "sum", "signum", "bitCount", "reverse", "reverseBytes",
+		"highestOneBit", "lowestOneBit", "numberOfLeadingZeros", "numberOfTrailingZeros", "rotateLeft", "rotateRight", "divideUnsigned",
+		"remainderUnsigned", "fromString", "logicalAnd", "logicalOr", "logicalXor")));
+
+	private static volatile Set<String> theWhitelist = Collections.emptySet();
+	private static final ConcurrentHashMap<Method, Boolean> PURITY = new ConcurrentHashMap<>();
+
+	/**
+	 * @param method The method to test
+	 * @return Whether the method can be treated as pure
+	 */
+	public static boolean isPure(Method method) {
+		Boolean pure = PURITY.get(method);
+		if (pure == null) {
+			pure = computePurity(method);
+			PURITY.put(method, pure);
+		}
+		return pure;
+	}
+
+	/**
+	 * @param whitelist The names of classes (all of whose methods are pure) and methods (as <code>className.methodName</code>) that are
+	 *        declared pure in the config
+	 */
+	public static void setWhitelist(Collection<String> whitelist) {
+		Set<String> newWhitelist = whitelist.isEmpty() ? Collections.emptySet()
+			: Collections.unmodifiableSet(new LinkedHashSet<>(whitelist));
+		if (newWhitelist.equals(theWhitelist))
+			return;
+		theWhitelist = newWhitelist;
+		PURITY.clear();
+	}
+
+	private static boolean computePurity(Method method) {
+		Class<?> declaring = method.getDeclaringClass();
+		if (method.isAnnotationPresent(DBugPure.class) || declaring.isAnnotationPresent(DBugPure.class))
+			return true;
+		Set<String> whitelist = theWhitelist;
+		if (whitelist.contains(declaring.getName()) || whitelist.contains(declaring.getName() + "." + method.getName()))
+			return true;
+		if (method.getReturnType().isArray() || method.getReturnType() == void.class)
+			return false;
+		else if (declaring == Math.class)
+			return !method.getName().equals("random");
+		else if (!IMMUTABLE_TYPES.contains(declaring) || !isImmutable(method.getReturnType()))
+			return false; // e.g. String.chars() returns a stream
+		for (Class<?> paramType : method.getParameterTypes()) {
+			if (!isImmutable(paramType))
+				return false;
+		}
+		if (!Modifier.isStatic(method.getModifiers()))
+			return true;
+		// Static methods may depend on global state, e.g. system properties or a random number generator
+		String name = method.getName();
+		return PURE_STATIC_METHODS.contains(name) || name.startsWith("parse") || name.startsWith("to") || name.startsWith("is");
+	}
+
+	private static boolean isImmutable(Class<?> type) {
+		return type.isPrimitive() || type.isEnum() || IMMUTABLE_TYPES.contains(type);
+	}
+
+	private DBugPurity() {}
+}
@@ -1,6 +1,7 @@
 package org.dbug.expression;
 
 import java.util.Optional;
+import java.util.function.Function;
 
 import org.dbug.config.DBugConfiguredAnchor;
 import org.dbug.config.DBugConfigEvent;
@@ -19,4 +20,12 @@ public interface Expression<A, T> {
 	T evaluate(DBugConfigEvent<A> event) throws DBugParseException;
 
 	Expression<A, ? extends T> given(DBugConfiguredAnchor<A> anchor, boolean evalDynamic, boolean cacheable) throws DBugParseException;
+
+	/**
+	 * @param map The function to apply to each of this expression's direct sub-expressions
+	 * @return An expression like this one with each sub-expression replaced by its mapped value, or this expression if none changed
+	 */
+	default Expression<A, ? extends T> transform(Function<Expression<A, ?>, Expression<A, ?>> map) {
+		return this;
+	}
 }
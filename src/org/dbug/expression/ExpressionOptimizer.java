@@ -0,0 +1,151 @@
+package org.dbug.expression;
+
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds sub-expressions that occur more than once among a set of expressions (e.g. the variables and conditions of a config) and
+ * replaces them with a single {@link SharedExpression}, so that each is only evaluated once per event or anchor update.
+ *
+ * All expressions must first be {@link #scan(Expression) scanned}, then each may be {@link #share(Expression) shared}.
+ *
+ * This class also contains the {@link #simplify(Expression) simplification} pass applied to each parsed expression.
+ *
+ * @param <A> The anchor type
+ */
+public class ExpressionOptimizer<A> {
+	private final Map<Expression<A, ?>, Integer> theCounts;
+	private final Map<Expression<A, ?>, Expression<A, ?>> theReplacements;
+	private boolean hasCommonExpressions;
+
+	public ExpressionOptimizer() {
+		theCounts = new HashMap<>();
+		theReplacements = new HashMap<>();
+	}
+
+	public ExpressionOptimizer<A> scan(Expression<A, ?> expression) {
+		if (expression == null)
+			return this;
+		Integer count = theCounts.get(expression);
+		if (count == null) {
+			theCounts.put(expression, 1);
+			// Only descend into the first occurrence, so that the parts of a shared expression are not themselves shared
+			expression.transform(child -> {
+				scan(child);
+				return child;
+			});
+		} else {
+			theCounts.put(expression, count + 1);
+			if (isShareable(expression))
+				hasCommonExpressions = true;
+		}
+		return this;
+	}
+
+	public boolean hasCommonExpressions() {
+		return hasCommonExpressions;
+	}
+
+	public <T> Expression<A, T> share(Expression<A, T> expression) {
+		if (expression == null)
+			return null;
+		Expression<A, ?> replacement = theReplacements.get(expression);
+		if (replacement == null) {
+			Expression<A, ? extends T> transformed = expression.transform(this::share);
+			Integer count = theCounts.get(expression);
+			if (count != null && count > 1 && isShareable(expression))
+				replacement = new SharedExpression<>(transformed);
+			else
+				replacement = transformed;
+			theReplacements.put(expression, replacement);
+		}
+		return (Expression<A, T>) replacement;
+	}
+
+	/**
+	 * Simplifies a parsed expression by folding operations on literals, static final fields and string concatenation, dropping
+	 * <code>true &&</code> and <code>false ||</code> branches, and resolving conditionals with constant tests. Operations whose evaluation
+	 * fails are left alone so that the error surfaces when the expression is evaluated, as it would have without simplification. Method
+	 * invocations are only folded if they are {@link DBugPurity pure}.
+	 *
+	 * @param expression The expression to simplify
+	 * @return The simplified expression
+	 */
+	public static <A, T> Expression<A, T> simplify(Expression<A, T> expression) {
+		Expression<A, ? extends T> simplified = expression.transform(ExpressionOptimizer::simplify);
+		if (simplified instanceof BinaryExpression)
+			simplified = simplifyBinary((BinaryExpression<A, Object, Object, T>) simplified);
+		else if (simplified instanceof UnaryOperation)
+			simplified = simplifyUnary((UnaryOperation<A, Object, T>) simplified);
+		else if (simplified instanceof MethodExpression) {
+			try {
+				simplified = ((MethodExpression<A, ?, T>) simplified).foldIfPure();
+			} catch (DBugParseException | RuntimeException e) {
+				// Leave it for evaluation time
+			}
+		} else if (simplified instanceof ConditionalExpression) {
+			ConditionalExpression<A, T> conditional = (ConditionalExpression<A, T>) simplified;
+			if (conditional.getCondition() instanceof ConstantExpression) {
+				Boolean test = ((ConstantExpression<A, Boolean>) conditional.getCondition()).value;
+				if (test != null)
+					simplified = test ? conditional.getAffirmative() : conditional.getNegative();
+			}
+		}
+		return (Expression<A, T>) simplified;
+	}
+
+	private static <A, T> Expression<A, ? extends T> simplifyBinary(BinaryExpression<A, Object, Object, T> binary) {
+		Expression<A, ?> left = binary.getLeft();
+		Expression<A, ?> right = binary.getRight();
+		if (left instanceof ConstantExpression) {
+			Object leftValue = ((ConstantExpression<A, ?>) left).value;
+			try {
+				if (!binary.needsRightArg(leftValue))
+					return new ConstantExpression<>(binary.getResultType(), binary.evaluateLeftOnly(leftValue));
+				else if (right instanceof ConstantExpression)
+					return new ConstantExpression<>(binary.getResultType(),
+						binary.evaluate(leftValue, ((ConstantExpression<A, ?>) right).value));
+			} catch (RuntimeException e) {
+				// Leave it for evaluation time
+				return binary;
+			}
+		}
+		if (binary instanceof BinaryMathExpression) {
+			// The identity operands of the boolean operators
+			String op = ((BinaryMathExpression<A, T>) binary).getOpName();
+			Boolean identity = op.equals("&&") ? Boolean.TRUE : (op.equals("||") ? Boolean.FALSE : null);
+			if (identity != null) {
+				if (left instanceof ConstantExpression && identity.equals(((ConstantExpression<A, ?>) left).value))
+					return (Expression<A, ? extends T>) right;
+				else if (right instanceof ConstantExpression && identity.equals(((ConstantExpression<A, ?>) right).value))
+					return (Expression<A, ? extends T>) left;
+			}
+		}
+		return binary;
+	}
+
+	private static <A, T> Expression<A, ? extends T> simplifyUnary(UnaryOperation<A, Object, T> unary) {
+		Expression<A, ?> source = unary.getSource();
+		try {
+			if (source instanceof ConstantExpression)
+				return new ConstantExpression<>(unary.getResultType(), unary.evaluate(((ConstantExpression<A, ?>) source).value));
+			else if (source instanceof TypeExpression && unary instanceof FieldExpression) {
+				// Static final fields can't change, so they may be read now
+				int mods = ((FieldExpression<A, ?, T>) unary).getField().getModifiers();
+				if (Modifier.isStatic(mods) && Modifier.isFinal(mods))
+					return new ConstantExpression<>(unary.getResultType(), unary.evaluate(null));
+			}
+		} catch (DBugParseException | RuntimeException e) {
+			// Leave it for evaluation time
+		}
+		return unary;
+	}
+
+	private static boolean isShareable(Expression<?, ?> expression) {
+		// Constants, variable references and type expressions are no cheaper to look up in the cache than to evaluate,
+		// and constructors and array initializers must produce a new instance each time
+		return expression instanceof MethodExpression || expression instanceof UnaryOperation || expression instanceof BinaryExpression
+			|| expression instanceof ConditionalExpression;
+	}
+}
@@ -836,6 +836,11 @@ public class ExpressionParser {
 	}
 
 	public static <T, X> Expression<T, ?> parseExpression(DBugAntlrExpression parsedItem, TypeToken<X> type, DBugParseEnv<T> env)
+		throws DBugParseException {
+		return ExpressionOptimizer.simplify(parse(parsedItem, type, env));
+	}
+
+	private static <T, X> Expression<T, ?> parse(DBugAntlrExpression parsedItem, TypeToken<X> type, DBugParseEnv<T> env)
 		throws DBugParseException {
 		// Sort from easiest to hardest
 		// Literals first
@@ -1052,7 +1057,7 @@ public class ExpressionParser {
 
 	private static <T, X> Expression<T, ? extends X> evaluateTypeChecked(DBugAntlrExpression parsedItem, TypeToken<X> type,
 		DBugParseEnv<T> env) throws DBugParseException {
-		Expression<T, ?> result = parseExpression(parsedItem, type, env);
+		Expression<T, ?> result = parse(parsedItem, type, env);
 
 		if (!DBugUtils.isAssignableFrom(type, result.getResultType()))
 			throw new DBugParseException(
@@ -1275,7 +1280,7 @@ public class ExpressionParser {
 
 		Expression<T, ?>[] args = new Expression[arguments.size()];
 		for (int i = 0; i < args.length; i++)
-			args[i] = parseExpression(arguments.get(i), argTargetTypes[i], env);
+			args[i] = parse(arguments.get(i), argTargetTypes[i], env);
 
 		Map<TypeToken<?>, TypeToken<?>> typeVariables = new HashMap<>();
 		for (int i = 0; i < argTargetTypes.length; i++)
@@ -6,6 +6,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -53,6 +55,22 @@ public class ExternalExpressionSpec extends DBugAntlrExpression {
 		return theArgNames;
 	}
 
+	@Override
+	public int hashCode() {
+		return Objects.hash(theClassName, theMethodName, theArgNames);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		else if (!(obj instanceof ExternalExpressionSpec))
+			return false;
+		ExternalExpressionSpec other = (ExternalExpressionSpec) obj;
+		return theClassName.equals(other.theClassName) && theMethodName.equals(other.theMethodName)
+			&& theArgNames.equals(other.theArgNames);
+	}
+
 	public <A> Expression<A, ?> getFor(DBugParseEnv<A> env) throws DBugParseException {
 		Class<?> clazz = env.getType(theClassName);
 		List<Expression<A, ?>> args = new ArrayList<>(theArgNames.size());
@@ -135,6 +153,36 @@ public class ExternalExpressionSpec extends DBugAntlrExpression {
 				return new ExternalExpression<>(theMethod, args, theType);
 		}
 
+		@Override
+		public Expression<A, ? extends T> transform(Function<Expression<A, ?>, Expression<A, ?>> map) {
+			List<Expression<A, ?>> args = new ArrayList<>(theArgs.size());
+			boolean anyDiff = false;
+			for (Expression<A, ?> arg : theArgs) {
+				Expression<A, ?> mapped = map.apply(arg);
+				anyDiff |= mapped != arg;
+				args.add(mapped);
+			}
+			if (anyDiff)
+				return new ExternalExpression<>(theMethod, args, theType);
+			else
+				return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return theMethod.hashCode() * 31 + theArgs.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			else if (!(obj instanceof ExternalExpression))
+				return false;
+			ExternalExpression<?, ?> other = (ExternalExpression<?, ?>) obj;
+			return theMethod.equals(other.theMethod) && theArgs.equals(other.theArgs);
+		}
+
 		@Override
 		public String toString() {
 			StringBuilder str = new StringBuilder().append(theMethod.getDeclaringClass().getName()).append('.').append(theMethod.getName());
@@ -17,6 +17,10 @@ public class FieldExpression<A, S, T> extends UnaryOperation<A, S, T> {
 		theField = field;
 	}
 
+	public Field getField() {
+		return theField;
+	}
+
 	@Override
 	protected T evaluate(S sourceValue) throws DBugParseException {
 		if (sourceValue == null && (theField.getModifiers() & Modifier.STATIC) == 0) {
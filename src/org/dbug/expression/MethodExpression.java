@@ -5,6 +5,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.function.Function;
 
 import org.dbug.config.DBugConfiguredAnchor;
 import org.dbug.config.DBugConfigEvent;
@@ -16,16 +17,20 @@ public class MethodExpression<A, S, T> implements Expression<A, T> {
 	private final Method theMethod;
 	private final Expression<A, ?>[] theArgs;
 	private final TypeToken<T> theType;
+	private final MethodInlineCache theCache;
 
 	public MethodExpression(Expression<A, ? extends S> source, Expression<A, ?>[] args, Method method) {
-		this(source, method, args, (TypeToken<T>) source.getResultType().resolveType(method.getGenericReturnType()));
+		this(source, method, args, (TypeToken<T>) source.getResultType().resolveType(method.getGenericReturnType()),
+			new MethodInlineCache(method));
 	}
 
-	private MethodExpression(Expression<A, ? extends S> source, Method method, Expression<A, ?>[] args, TypeToken<T> type) {
+	private MethodExpression(Expression<A, ? extends S> source, Method method, Expression<A, ?>[] args, TypeToken<T> type,
+		MethodInlineCache cache) {
 		theSource = source;
 		theMethod = method;
 		theArgs = args;
 		theType = type;
+		theCache = cache;
 	}
 
 	@Override
@@ -46,11 +51,7 @@ public class MethodExpression<A, S, T> implements Expression<A, T> {
 		for (int a = 0; a < argValues.length; a++) {
 			argValues[a] = theArgs[a].evaluate(event);
 		}
-		try {
-			return (T) theMethod.invoke(source, argValues);
-		} catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException e) {
-			throw new DBugParseException("Could not evaluate method " + theMethod, e);
-		}
+		return (T) theCache.invoke(source, argValues);
 	}
 
 	@Override
@@ -65,7 +66,8 @@ public class MethodExpression<A, S, T> implements Expression<A, T> {
 			anyDiff |= args[a] != theArgs[a];
 		}
 		Expression<A, ? extends S> source = theSource.given(anchor, evalDynamic, cacheable);
-		if (cacheable && allConst//
+		// Pure methods can be evaluated once for the anchor even if the expression is not cacheable
+		if ((cacheable || DBugPurity.isPure(theMethod)) && allConst//
 			&& (Modifier.isStatic(theMethod.getModifiers()) || source instanceof ConstantExpression)) {
 			Object[] argValues = new Object[args.length];
 			for (int a = 0; a < args.length; a++)
@@ -80,14 +82,54 @@ public class MethodExpression<A, S, T> implements Expression<A, T> {
 		} else if (args.length == 1 && theMethod.getName().equals("equals") && source.equals(args[0])) {
 			return (Expression<A, ? extends T>) ConstantExpression.TRUE();
 		} else if (anyDiff)
-			return new MethodExpression<>(source, theMethod, args, theType);
+			return new MethodExpression<>(source, theMethod, args, theType, theCache);
+		else
+			return this;
+	}
+
+	/**
+	 * @return A constant for this invocation if the method is pure and its target and arguments are all constant, or this expression
+	 * @throws DBugParseException If the invocation fails
+	 */
+	Expression<A, ? extends T> foldIfPure() throws DBugParseException {
+		if (!DBugPurity.isPure(theMethod))
+			return this;
+		boolean isStatic = Modifier.isStatic(theMethod.getModifiers());
+		if (!isStatic && !(theSource instanceof ConstantExpression))
+			return this;
+		Object[] argValues = new Object[theArgs.length];
+		for (int a = 0; a < theArgs.length; a++) {
+			if (!(theArgs[a] instanceof ConstantExpression))
+				return this;
+			argValues[a] = ((ConstantExpression<A, ?>) theArgs[a]).value;
+		}
+		try {
+			S srcVal = isStatic ? null : ((ConstantExpression<A, S>) theSource).value;
+			return new ConstantExpression<>(theType, (T) theMethod.invoke(srcVal, argValues));
+		} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+			throw new DBugParseException("Could not evaluate method " + theMethod, e);
+		}
+	}
+
+	@Override
+	public Expression<A, ? extends T> transform(Function<Expression<A, ?>, Expression<A, ?>> map) {
+		Expression<A, ? extends S> source = (Expression<A, ? extends S>) map.apply(theSource);
+		boolean anyDiff = source != theSource;
+		Expression<A, ?>[] args = new Expression[theArgs.length];
+		for (int a = 0; a < args.length; a++) {
+			args[a] = map.apply(theArgs[a]);
+			anyDiff |= args[a] != theArgs[a];
+		}
+		if (anyDiff)
+			return new MethodExpression<>(source, theMethod, args, theType, theCache);
 		else
 			return this;
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(theSource, theMethod, theArgs);
+		// Arrays.hashCode, as the args array itself only has identity hashing
+		return (Objects.hashCode(theSource) * 31 + theMethod.hashCode()) * 31 + Arrays.hashCode(theArgs);
 	}
 
 	@Override
@@ -97,7 +139,7 @@ public class MethodExpression<A, S, T> implements Expression<A, T> {
 		else if (!(obj instanceof MethodExpression))
 			return false;
 		MethodExpression<?, ?, ?> other = (MethodExpression<?, ?, ?>) obj;
-		return theMethod.equals(other.theMethod) && Objects.equals(theSource, other.theSource) && Arrays.deepEquals(theArgs, other.theArgs);
+		return theMethod.equals(other.theMethod) && Objects.equals(theSource, other.theSource) && Arrays.equals(theArgs, other.theArgs);
 	}
 
 	@Override
@@ -0,0 +1,163 @@
+package org.dbug.expression;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * An inline cache for a method call site in an expression. For each receiver class seen (up to {@link #MAX_POLYMORPHISM}), it holds a
+ * method handle for that class's implementation of the method, so that each handle only ever sees a single receiver type. Beyond that,
+ * the call site is megamorphic and uses a single handle for the declared method, as do receiver classes whose implementation can't be
+ * unreflected.
+ */
+class MethodInlineCache {
+	static final int MAX_POLYMORPHISM = 4;
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private final Method theMethod;
+	private final boolean isStatic;
+	/** Copy-on-write so that invocation needs no locking */
+	private volatile Entry[] theEntries;
+	/** The handle for the declared method, used for static methods and when the call site is megamorphic */
+	private volatile MethodHandle theGeneralHandle;
+	private volatile boolean isMegamorphic;
+
+	MethodInlineCache(Method method) {
+		theMethod = method;
+		isStatic = Modifier.isStatic(method.getModifiers());
+		theEntries = new Entry[0];
+	}
+
+	Object invoke(Object target, Object[] args) throws DBugParseException {
+		MethodHandle handle;
+		if (isStatic || isMegamorphic)
+			handle = getGeneralHandle();
+		else
+			handle = getHandle(target.getClass());
+		try {
+			if (handle != null)
+				return handle.invokeExact(target, args);
+			else
+				return theMethod.invoke(target, args);
+		} catch (Error e) {
+			throw e;
+		} catch (InvocationTargetException e) {
+			// Reflection wraps exceptions thrown by the method, handles don't
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new DBugParseException("Could not evaluate method " + theMethod, e.getCause());
+		} catch (Throwable e) {
+			throw new DBugParseException("Could not evaluate method " + theMethod, e);
+		}
+	}
+
+	private MethodHandle getHandle(Class<?> receiverClass) {
+		Entry[] entries = theEntries;
+		for (Entry entry : entries) {
+			if (entry.receiverClass == receiverClass)
+				return entry.handle;
+		}
+		synchronized (this) {
+			entries = theEntries;
+			for (Entry entry : entries) {
+				if (entry.receiverClass == receiverClass)
+					return entry.handle;
+			}
+			if (entries.length == MAX_POLYMORPHISM) {
+				isMegamorphic = true;
+				theEntries = new Entry[0];
+				return getGeneralHandle();
+			}
+			Entry[] newEntries = new Entry[entries.length + 1];
+			System.arraycopy(entries, 0, newEntries, 0, entries.length);
+			newEntries[entries.length] = new Entry(receiverClass, createDirectHandle(receiverClass));
+			theEntries = newEntries;
+			return newEntries[entries.length].handle;
+		}
+	}
+
+	private MethodHandle getGeneralHandle() {
+		MethodHandle handle = theGeneralHandle;
+		if (handle == null)
+			theGeneralHandle = handle = createGeneralHandle();
+		return handle;
+	}
+
+	private Method findImplementation(Class<?> receiverClass) {
+		for (Class<?> c = receiverClass; c != null && c != theMethod.getDeclaringClass(); c = c.getSuperclass()) {
+			try {
+				Method impl = c.getDeclaredMethod(theMethod.getName(), theMethod.getParameterTypes());
+				if (!Modifier.isAbstract(impl.getModifiers()))
+					return impl;
+			} catch (NoSuchMethodException e) {
+				// Not overridden here, try the super class
+			}
+		}
+		return theMethod;
+	}
+
+	/**
+	 * @param receiverClass The exact class of the receiver
+	 * @return A handle that invokes the receiver class's implementation of the method, or the {@link #getGeneralHandle() general handle}
+	 *         if the implementation can't be unreflected
+	 */
+	private MethodHandle createDirectHandle(Class<?> receiverClass) {
+		Method impl = findImplementation(receiverClass);
+		// Default methods are resolved across interfaces, which findImplementation doesn't do
+		if (Modifier.isAbstract(impl.getModifiers()) || impl.getDeclaringClass().isInterface())
+			return getGeneralHandle();
+		MethodHandle handle = unreflect(impl);
+		return handle == null ? getGeneralHandle() : handle;
+	}
+
+	/** @return A handle for the declared method, or null if the method is not accessible via a handle */
+	private MethodHandle createGeneralHandle() {
+		return unreflect(theMethod); // Null falls back to reflection
+	}
+
+	/** @return A handle for the method adapted to type (Object, Object[])Object, or null if the method is not accessible */
+	private MethodHandle unreflect(Method method) {
+		try {
+			method.setAccessible(true);
+		} catch (RuntimeException e) {
+			// SecurityException, or InaccessibleObjectException on newer JVMs. Public methods of public classes may still be unreflected.
+		}
+		MethodHandle handle;
+		try {
+			handle = LOOKUP.unreflect(method).asFixedArity();
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+		return adapt(handle, method.getParameterCount());
+	}
+
+	int getPolymorphism() {
+		return theEntries.length;
+	}
+
+	boolean isMegamorphic() {
+		return isMegamorphic;
+	}
+
+	/** @return The handle, adapted to type (Object, Object[])Object */
+	private MethodHandle adapt(MethodHandle handle, int paramCount) {
+		if (isStatic)
+			handle = MethodHandles.dropArguments(handle.asType(MethodType.genericMethodType(paramCount)), 0, Object.class);
+		else
+			handle = handle.asType(MethodType.genericMethodType(paramCount + 1));
+		return handle.asSpreader(Object[].class, paramCount);
+	}
+
+	private static class Entry {
+		final Class<?> receiverClass;
+		final MethodHandle handle;
+
+		Entry(Class<?> receiverClass, MethodHandle handle) {
+			this.receiverClass = receiverClass;
+			this.handle = handle;
+		}
+	}
+}
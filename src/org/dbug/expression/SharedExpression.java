@@ -0,0 +1,144 @@
+package org.dbug.expression;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.dbug.config.DBugConfigEvent;
+import org.dbug.config.DBugConfiguredAnchor;
+import org.qommons.Transaction;
+
+import com.google.common.reflect.TypeToken;
+
+/**
+ * Wraps a sub-expression that occurs more than once in a config's expressions (see {@link ExpressionOptimizer}). Within a
+ * {@link #scope(Object) scope}, the wrapped expression is only evaluated once per event or anchor update, no matter how many expressions
+ * reference it. Outside of a scope, it evaluates normally.
+ *
+ * @param <A> The anchor type
+ * @param <T> The type of the expression
+ */
+public class SharedExpression<A, T> implements Expression<A, T> {
+	private static final ThreadLocal<Scopes> SCOPES = ThreadLocal.withInitial(Scopes::new);
+
+	private final Expression<A, ? extends T> theShared;
+
+	public SharedExpression(Expression<A, ? extends T> shared) {
+		theShared = shared;
+	}
+
+	public Expression<A, ? extends T> getShared() {
+		return theShared;
+	}
+
+	/**
+	 * Opens a scope in which shared expressions will only be evaluated once. The scope must be closed by the caller on the same thread.
+	 *
+	 * @param anchorValue The value of the anchor for which expressions are being evaluated
+	 * @return The transaction to close the scope
+	 */
+	public static Transaction scope(Object anchorValue) {
+		Scopes scopes = SCOPES.get();
+		scopes.push(anchorValue);
+		return scopes;
+	}
+
+	@Override
+	public TypeToken<T> getResultType() {
+		return (TypeToken<T>) theShared.getResultType();
+	}
+
+	@Override
+	public T evaluate(DBugConfigEvent<A> event) throws DBugParseException {
+		Scope scope = SCOPES.get().current();
+		if (scope == null || scope.anchorValue != event.getAnchor().getValue())
+			return theShared.evaluate(event);
+		Object value = scope.values.get(this);
+		if (value == null) {
+			T v = theShared.evaluate(event);
+			scope.values.put(this, v == null ? NULL : v);
+			return v;
+		} else
+			return value == NULL ? null : (T) value;
+	}
+
+	@Override
+	public Expression<A, ? extends T> given(DBugConfiguredAnchor<A> anchor, boolean evalDynamic, boolean cacheable)
+		throws DBugParseException {
+		Scope scope = SCOPES.get().current();
+		if (scope == null || scope.anchorValue != anchor.getValue())
+			return doGiven(anchor, evalDynamic, cacheable);
+		Expression<?, ?>[] givens = scope.givens.get(this);
+		if (givens == null) {
+			givens = new Expression[4];
+			scope.givens.put(this, givens);
+		}
+		int index = (evalDynamic ? 2 : 0) | (cacheable ? 1 : 0);
+		Expression<A, ? extends T> given = (Expression<A, ? extends T>) givens[index];
+		if (given == null)
+			givens[index] = given = doGiven(anchor, evalDynamic, cacheable);
+		return given;
+	}
+
+	private Expression<A, ? extends T> doGiven(DBugConfiguredAnchor<A> anchor, boolean evalDynamic, boolean cacheable)
+		throws DBugParseException {
+		Expression<A, ? extends T> given = theShared.given(anchor, evalDynamic, cacheable);
+		if (given == theShared)
+			return this;
+		else if (given instanceof ConstantExpression)
+			return given;
+		else
+			return new SharedExpression<>(given);
+	}
+
+	@Override
+	public int hashCode() {
+		return theShared.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		else if (!(obj instanceof SharedExpression))
+			return false;
+		return theShared.equals(((SharedExpression<?, ?>) obj).theShared);
+	}
+
+	@Override
+	public String toString() {
+		return theShared.toString();
+	}
+
+	private static class Scope {
+		final IdentityHashMap<SharedExpression<?, ?>, Object> values = new IdentityHashMap<>();
+		final IdentityHashMap<SharedExpression<?, ?>, Expression<?, ?>[]> givens = new IdentityHashMap<>();
+		Object anchorValue;
+	}
+
+	private static class Scopes implements Transaction {
+		// Scopes are re-used to avoid allocating maps for every event
+		private final List<Scope> theScopes = new ArrayList<>();
+		private int theDepth;
+
+		Scope current() {
+			return theDepth == 0 ? null : theScopes.get(theDepth - 1);
+		}
+
+		void push(Object anchorValue) {
+			if (theDepth == theScopes.size())
+				theScopes.add(new Scope());
+			theScopes.get(theDepth++).anchorValue = anchorValue;
+		}
+
+		@Override
+		public void close() {
+			Scope scope = theScopes.get(--theDepth);
+			scope.anchorValue = null;
+			if (!scope.values.isEmpty())
+				scope.values.clear();
+			if (!scope.givens.isEmpty())
+				scope.givens.clear();
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package org.dbug.expression;
 
+import java.util.function.Function;
+
 import org.dbug.config.DBugConfiguredAnchor;
 import org.dbug.config.DBugConfigEvent;
 
@@ -43,6 +45,15 @@ public abstract class UnaryOperation<A, S, T> implements Expression<A, T> {
 			return copy(source);
 	}
 
+	@Override
+	public Expression<A, ? extends T> transform(Function<Expression<A, ?>, Expression<A, ?>> map) {
+		Expression<A, ? extends S> source = (Expression<A, ? extends S>) map.apply(theSource);
+		if (source == theSource)
+			return this;
+		else
+			return copy(source);
+	}
+
 	protected abstract T evaluate(S sourceValue) throws DBugParseException;
 
 	protected abstract UnaryOperation<A, S, T> copy(Expression<A, ? extends S> sourceCopy);
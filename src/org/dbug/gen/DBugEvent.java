@@ -0,0 +1,19 @@
+package org.dbug.gen;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a {@link DBugSchema} interface as firing an event. The method's parameters are the event's fields, in order, named
+ * by the parameter names.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface DBugEvent {
+	/** @return The name of the event. By default, the method name without the "fire" prefix, e.g. "requestDone" for fireRequestDone. */
+	String value() default "";
+}
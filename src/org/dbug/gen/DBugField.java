@@ -0,0 +1,16 @@
+package org.dbug.gen;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Marks a single-parameter method of a {@link DBugSchema} interface as setting an externally-specified dynamic field of the anchor */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface DBugField {
+	/** @return The name of the field. By default, the method name without the "set" prefix, e.g. "status" for setStatus. */
+	String value() default "";
+}
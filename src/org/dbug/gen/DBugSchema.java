@@ -0,0 +1,28 @@
+package org.dbug.gen;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an interface as the declaration of a DBug anchor type. The {@link DBugSchemaProcessor} generates an implementation of the
+ * interface named <code>&lt;Interface>Anchor</code> in the same package, which declares the anchor type and fires its events through
+ * pre-resolved handles. Anchors are created with the generated class's static <code>debug</code> method, which takes the anchor value
+ * followed by the initial value of each {@link DBugField} field, in declaration order.
+ *
+ * Each abstract method of the interface must be either an event method (a void method annotated with {@link DBugEvent} or whose name
+ * starts with "fire") or a dynamic field setter (a void method with one parameter annotated with {@link DBugField}). The interface may
+ * also declare <code>DBugAnchor&lt;T> getAnchor()</code> to expose the underlying anchor.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface DBugSchema {
+	/** @return The schema to declare the anchor type under */
+	String value();
+
+	/** @return The type of the anchor's value */
+	Class<?> anchor();
+}
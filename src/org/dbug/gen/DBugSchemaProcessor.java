@@ -0,0 +1,328 @@
+package org.dbug.gen;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates typed anchor classes for interfaces annotated with {@link DBugSchema}. The generated class declares the anchor type once,
+ * resolves a {@link org.dbug.DBugEventHandle handle} for each event when it is loaded, and implements each event method by firing the
+ * event positionally through its handle. Event values are only boxed if the event has subscribers on the anchor.
+ */
+public class DBugSchemaProcessor extends AbstractProcessor {
+	private static final String SUFFIX = "Anchor";
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton(DBugSchema.class.getName());
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element element : roundEnv.getElementsAnnotatedWith(DBugSchema.class)) {
+			if (element.getKind() != ElementKind.INTERFACE) {
+				error(element, "@" + DBugSchema.class.getSimpleName() + " may only be applied to interfaces");
+				continue;
+			}
+			SchemaInterface schema = parse((TypeElement) element);
+			if (schema == null)
+				continue;
+			try {
+				generate(schema);
+			} catch (IOException e) {
+				error(element, "Could not generate " + schema.generatedName + ": " + e);
+			}
+		}
+		return true;
+	}
+
+	private SchemaInterface parse(TypeElement iface) {
+		if (!iface.getTypeParameters().isEmpty()) {
+			error(iface, "DBug schema interfaces may not be generic");
+			return null;
+		}
+		AnnotationMirror schemaAnn = getAnnotation(iface, DBugSchema.class);
+		String schemaName = (String) getValue(schemaAnn, "value").getValue();
+		TypeMirror anchorType = (TypeMirror) getValue(schemaAnn, "anchor").getValue();
+		SchemaInterface schema = new SchemaInterface(iface, schemaName, processingEnv.getTypeUtils().erasure(anchorType).toString());
+		boolean valid = true;
+		for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(iface))) {
+			if (!method.getModifiers().contains(Modifier.ABSTRACT) || method.getEnclosingElement().getKind() != ElementKind.INTERFACE)
+				continue;
+			String methodName = method.getSimpleName().toString();
+			if (methodName.equals("getAnchor") && method.getParameters().isEmpty()) {
+				schema.declaresGetAnchor = true;
+				continue;
+			} else if (method.getReturnType().getKind() != TypeKind.VOID || !method.getTypeParameters().isEmpty()) {
+				error(method, "DBug schema methods must be non-generic and return void");
+				valid = false;
+				continue;
+			}
+			AnnotationMirror eventAnn = getAnnotation(method, DBugEvent.class);
+			AnnotationMirror fieldAnn = getAnnotation(method, DBugField.class);
+			if (fieldAnn != null) {
+				if (eventAnn != null || method.getParameters().size() != 1) {
+					error(method, "@" + DBugField.class.getSimpleName() + " methods must take exactly one parameter");
+					valid = false;
+					continue;
+				}
+				String name = getName(fieldAnn, methodName, "set");
+				if (schema.fields.containsKey(name)) {
+					error(method, "Field " + name + " is declared more than once");
+					valid = false;
+				} else
+					schema.fields.put(name, method);
+			} else if (eventAnn != null || methodName.startsWith("fire")) {
+				String name = getName(eventAnn, methodName, "fire");
+				if (schema.events.containsKey(name)) {
+					error(method, "Event " + name + " is declared more than once");
+					valid = false;
+				} else
+					schema.events.put(name, method);
+			} else {
+				error(method, "DBug schema methods must be annotated with @" + DBugEvent.class.getSimpleName() + " or @"
+					+ DBugField.class.getSimpleName() + ", or start with \"fire\"");
+				valid = false;
+			}
+		}
+		return valid ? schema : null;
+	}
+
+	private static String getName(AnnotationMirror ann, String methodName, String prefix) {
+		if (ann != null) {
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : ann.getElementValues().entrySet()) {
+				if (value.getKey().getSimpleName().contentEquals("value") && ((String) value.getValue().getValue()).length() > 0)
+					return (String) value.getValue().getValue();
+			}
+		}
+		if (methodName.length() > prefix.length() && methodName.startsWith(prefix)
+			&& Character.isUpperCase(methodName.charAt(prefix.length())))
+			return Character.toLowerCase(methodName.charAt(prefix.length())) + methodName.substring(prefix.length() + 1);
+		return methodName;
+	}
+
+	private static AnnotationMirror getAnnotation(Element element, Class<?> annotationType) {
+		for (AnnotationMirror ann : element.getAnnotationMirrors()) {
+			if (((TypeElement) ann.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationType.getName()))
+				return ann;
+		}
+		return null;
+	}
+
+	private AnnotationValue getValue(AnnotationMirror ann, String name) {
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : processingEnv.getElementUtils()
+			.getElementValuesWithDefaults(ann).entrySet()) {
+			if (value.getKey().getSimpleName().contentEquals(name))
+				return value.getValue();
+		}
+		return null;
+	}
+
+	private void generate(SchemaInterface schema) throws IOException {
+		String pkg = schema.packageName;
+		String a = schema.anchorType;
+		try (PrintWriter out = new PrintWriter(
+			processingEnv.getFiler().createSourceFile(schema.qualifiedGeneratedName(), schema.iface).openWriter())) {
+			out.println("// Generated by " + getClass().getName() + " from " + schema.iface.getQualifiedName() + ". Do not edit.");
+			if (pkg.length() > 0)
+				out.println("package " + pkg + ";");
+			out.println();
+			out.println("public final class " + schema.generatedName + " implements " + schema.iface.getQualifiedName() + " {");
+			out.println("\tpublic static final org.dbug.DBugAnchorType<" + a + "> TYPE = org.dbug.DBug.declare(\"" + escape(schema.schema)
+				+ "\", " + a + ".class, builder -> builder");
+			for (Map.Entry<String, ExecutableElement> field : schema.fields.entrySet())
+				out.println("\t\t.withExternalDynamicField(\"" + escape(field.getKey()) + "\", "
+					+ typeToken(field.getValue().getParameters().get(0).asType()) + ")");
+			for (Map.Entry<String, ExecutableElement> event : schema.events.entrySet()) {
+				out.print("\t\t.withEvent(\"" + escape(event.getKey()) + "\", eb -> ");
+				if (event.getValue().getParameters().isEmpty())
+					out.print("{}"); // The lambda is a Consumer, so it can't be a bare expression
+				else {
+					out.print("eb");
+					for (VariableElement param : event.getValue().getParameters())
+						out.print(".withEventField(\"" + param.getSimpleName() + "\", " + typeToken(param.asType()) + ")");
+				}
+				out.println(")");
+			}
+			out.println("\t);");
+			List<String> handles = new ArrayList<>(schema.events.size());
+			for (String event : schema.events.keySet()) {
+				String handle = constantName(event);
+				while (handles.contains(handle) || handle.equals("TYPE"))
+					handle += "_";
+				handles.add(handle);
+				out.println("\tprivate static final org.dbug.DBugEventHandle<" + a + "> " + handle + " = TYPE.eventHandle(\"" + escape(event)
+					+ "\");");
+			}
+			// Field indexes are resolved once so that the setters don't look fields up by name
+			List<String> fieldIndexes = new ArrayList<>(schema.fields.size());
+			for (String field : schema.fields.keySet()) {
+				String index = constantName(field) + "_FIELD";
+				while (handles.contains(index) || fieldIndexes.contains(index))
+					index += "_";
+				fieldIndexes.add(index);
+				out.println("\tprivate static final int " + index + " = TYPE.getDynamicFields().keyIndex(\"" + escape(field) + "\");");
+			}
+			out.println();
+			out.println("\tprivate final org.dbug.DBugAnchor<" + a + "> theAnchor;");
+			out.println();
+			out.println("\tprivate " + schema.generatedName + "(org.dbug.DBugAnchor<" + a + "> anchor) {");
+			out.println("\t\ttheAnchor = anchor;");
+			out.println("\t}");
+			out.println();
+			// The external fields must be specified to build the anchor, so they are parameters of the factory
+			List<String> fieldParams = new ArrayList<>(schema.fields.size());
+			out.print("\tpublic static " + schema.generatedName + " debug(" + a + " value");
+			for (ExecutableElement method : schema.fields.values()) {
+				VariableElement param = method.getParameters().get(0);
+				String paramName = param.getSimpleName().toString();
+				while (paramName.equals("value") || fieldParams.contains(paramName))
+					paramName += "_";
+				fieldParams.add(paramName);
+				out.print(", " + param.asType() + " " + paramName);
+			}
+			out.println(") {");
+			out.print("\t\treturn new " + schema.generatedName + "(TYPE.debug(value)");
+			int f = 0;
+			for (String field : schema.fields.keySet())
+				out.print(".with(\"" + escape(field) + "\", " + fieldParams.get(f++) + ")");
+			out.println(".build());");
+			out.println("\t}");
+			out.println();
+			if (schema.declaresGetAnchor)
+				out.println("\t@Override");
+			out.println("\tpublic org.dbug.DBugAnchor<" + a + "> getAnchor() {");
+			out.println("\t\treturn this.theAnchor;");
+			out.println("\t}");
+			f = 0;
+			for (ExecutableElement method : schema.fields.values()) {
+				out.println();
+				out.println("\t@Override");
+				out.println("\tpublic void " + method.getSimpleName() + "(" + params(method) + ") {");
+				out.println("\t\tthis.theAnchor.setDynamicValue(" + schema.generatedName + "." + fieldIndexes.get(f++) + ", "
+					+ method.getParameters().get(0).getSimpleName() + ");");
+				out.println("\t}");
+			}
+			int h = 0;
+			for (ExecutableElement method : schema.events.values()) {
+				// Qualified, so that event parameters can't shadow the anchor or the handle
+				String handle = schema.generatedName + "." + handles.get(h++);
+				out.println();
+				out.println("\t@Override");
+				out.println("\tpublic void " + method.getSimpleName() + "(" + params(method) + ") {");
+				// Checking first avoids boxing primitive values and allocating the varargs array for events no one is listening to
+				out.println("\t\tif (this.theAnchor.isSubscribed(" + handle + "))");
+				out.print("\t\t\tthis.theAnchor.fire(" + handle);
+				boolean singleArg = method.getParameters().size() == 1;
+				for (VariableElement param : method.getParameters()) {
+					out.print(", ");
+					// A lone array argument would otherwise be passed as the varargs array itself
+					if (singleArg && param.asType().getKind() == TypeKind.ARRAY)
+						out.print("(Object) ");
+					out.print(param.getSimpleName());
+				}
+				out.println(");");
+				out.println("\t}");
+			}
+			out.println("}");
+		}
+	}
+
+	private String params(ExecutableElement method) {
+		StringBuilder str = new StringBuilder();
+		for (VariableElement param : method.getParameters()) {
+			if (str.length() > 0)
+				str.append(", ");
+			str.append(param.asType()).append(' ').append(param.getSimpleName());
+		}
+		return str.toString();
+	}
+
+	private String typeToken(TypeMirror type) {
+		if (type.getKind().isPrimitive())
+			type = processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).asType();
+		if (type.getKind() == TypeKind.DECLARED && ((DeclaredType) type).getTypeArguments().isEmpty())
+			return "com.google.common.reflect.TypeToken.of(" + type + ".class)";
+		else
+			return "new com.google.common.reflect.TypeToken<" + type + ">() {}";
+	}
+
+	private static String constantName(String eventName) {
+		StringBuilder str = new StringBuilder();
+		for (int i = 0; i < eventName.length(); i++) {
+			char c = eventName.charAt(i);
+			if (Character.isUpperCase(c) && i > 0 && Character.isLowerCase(eventName.charAt(i - 1)))
+				str.append('_');
+			str.append(Character.isJavaIdentifierPart(c) ? Character.toUpperCase(c) : '_');
+		}
+		if (str.length() == 0 || !Character.isJavaIdentifierStart(str.charAt(0)))
+			str.insert(0, '_');
+		return str.toString();
+	}
+
+	private static String escape(String str) {
+		return str.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+	private class SchemaInterface {
+		final TypeElement iface;
+		final String schema;
+		final String anchorType;
+		final String packageName;
+		final String generatedName;
+		final Map<String, ExecutableElement> fields;
+		final Map<String, ExecutableElement> events;
+		boolean declaresGetAnchor;
+
+		SchemaInterface(TypeElement iface, String schema, String anchorType) {
+			this.iface = iface;
+			this.schema = schema;
+			this.anchorType = anchorType;
+			packageName = processingEnv.getElementUtils().getPackageOf(iface).getQualifiedName().toString();
+			// Nested interfaces are generated as top-level classes, e.g. Outer_InnerAnchor
+			StringBuilder name = new StringBuilder(iface.getSimpleName());
+			for (Element enclosing = iface.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing
+				.getEnclosingElement())
+				name.insert(0, enclosing.getSimpleName() + "_");
+			generatedName = name.append(SUFFIX).toString();
+			fields = new LinkedHashMap<>();
+			events = new LinkedHashMap<>();
+		}
+
+		String qualifiedGeneratedName() {
+			return packageName.length() == 0 ? generatedName : packageName + "." + generatedName;
+		}
+	}
+}
@@ -3,11 +3,16 @@ package org.dbug.impl;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.dbug.config.DBugConfigTemplate;
 import org.dbug.config.DBugConfigTemplate.DBugConfigTemplateValue;
@@ -15,6 +20,7 @@ import org.dbug.config.DBugConfigTemplate.DBugEventConfigTemplate;
 import org.dbug.config.DBugEventReporter;
 import org.dbug.expression.DBugAntlrExpression;
 import org.dbug.expression.DBugParseException;
+import org.dbug.expression.DBugPurity;
 import org.dbug.expression.ExpressionParser;
 import org.dbug.expression.ExternalExpressionSpec;
 import org.qommons.ArrayUtils;
@@ -24,14 +30,58 @@ import org.qommons.collect.QuickSet.QuickMap;
 import org.qommons.config.QommonsConfig;
 
 public class DBugConfigSet {
+	/** The names of the top-level config elements that are not config templates */
+	public static final Set<String> NON_TEMPLATE_ELEMENTS = Collections
+		.unmodifiableSet(new HashSet<>(Arrays.asList("reporters", "pure", "weave")));
+
+	/** Notified whenever DBug's config is read */
+	public interface ConfigListener {
+		/**
+		 * @param config The new DBug config, or null if DBug has been un-configured
+		 * @param templates The config templates now in effect
+		 */
+		void configChanged(QommonsConfig config, Collection<DBugConfigTemplate> templates);
+	}
+
+	private static final List<ConfigListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Static so that listeners (e.g. the agent) can be added before DBug is initialized
+	 *
+	 * @param listener The listener to notify whenever the config is read
+	 */
+	public static void addConfigListener(ConfigListener listener) {
+		LISTENERS.add(listener);
+	}
+
+	public static void removeConfigListener(ConfigListener listener) {
+		LISTENERS.remove(listener);
+	}
+
+	private static void fireConfigChanged(QommonsConfig config, Collection<DBugConfigTemplate> templates) {
+		for (ConfigListener listener : LISTENERS) {
+			try {
+				listener.configChanged(config, templates);
+			} catch (RuntimeException e) {
+				System.err.println("Exception notifying config listener " + listener);
+				e.printStackTrace();
+			}
+		}
+	}
+
 	private final List<EventReporterHolder> theReporters;
 	private final Map<String, EventReporterHolder> theReportersByName;
 	private final List<DBugConfigTemplate> theTemplates;
+	/** Compiled expressions from the last read, by source text. Re-used so that unchanged text needn't be re-parsed on reload. */
+	private Map<String, DBugAntlrExpression> theExpressions;
+	/** Compiled expressions used by the read in progress */
+	private Map<String, DBugAntlrExpression> theNewExpressions;
 
 	DBugConfigSet() {
 		theReporters = new ArrayList<>();
 		theReportersByName = new HashMap<>();
 		theTemplates = new ArrayList<>();
+		theExpressions = Collections.emptyMap();
 	}
 
 	public void read(URL configUrl, DefaultDBug dBug) throws IOException, DBugParseException {
@@ -39,10 +89,15 @@ public class DBugConfigSet {
 			for (DBugConfigTemplate t : theTemplates)
 				dBug.removeConfig(t);
 			theTemplates.clear();
-			for (EventReporterHolder r : theReporters)
+			for (EventReporterHolder r : theReporters) {
+				dBug.getMetrics().removeReporter(r.reporter);
 				r.reporter.close();
+			}
 			theReporters.clear();
 			theReportersByName.clear();
+			theExpressions = Collections.emptyMap();
+			DBugPurity.setWhitelist(Collections.emptyList());
+			fireConfigChanged(null, Collections.emptyList());
 			return;
 		}
 		QommonsConfig config = QommonsConfig.fromXml(configUrl);
@@ -86,22 +141,41 @@ public class DBugConfigSet {
 		// Once we've finished parsing the reporters, configure new reporters and close old ones
 		for (EventReporterHolder holder : oldReporters) {
 			theReportersByName.remove(holder.name);
+			dBug.getMetrics().removeReporter(holder.reporter);
 			holder.reporter.close();
 		}
 		theReporters.removeAll(oldReporters);
 		for (EventReporterHolder holder : newReporters) {
 			theReportersByName.put(holder.name, holder);
 			holder.configure();
+			dBug.getMetrics().addReporter(holder.name, holder.reporter);
 		}
 		if (!newReporters.isEmpty()) {
 			theReporters.addAll(newReporters);
 		}
 
+		// Parse the pure whitelist before the templates, which may use it
+		List<String> pure = new ArrayList<>();
+		for (QommonsConfig pureConfig : config.subConfigs("pure")) {
+			String name = pureConfig.getValue();
+			if (name == null || name.trim().isEmpty())
+				throw new DBugParseException("Pure declared with no class or method name");
+			pure.add(name.trim());
+		}
+		DBugPurity.setWhitelist(pure);
+
 		// Parse templates
 		List<DBugConfigTemplate> templates = new ArrayList<>(config.subConfigs().length - 1);
-		for (QommonsConfig c : config.subConfigs()) {
-			if (!c.getName().equals("reporters"))
-				templates.add(parseTemplate(c));
+		theNewExpressions = new HashMap<>(theExpressions.size() * 3 / 2 + 1);
+		try {
+			for (QommonsConfig c : config.subConfigs()) {
+				if (!NON_TEMPLATE_ELEMENTS.contains(c.getName()))
+					templates.add(parseTemplate(c));
+			}
+			// Only retain expressions that are still in use
+			theExpressions = theNewExpressions;
+		} finally {
+			theNewExpressions = null;
 		}
 
 		templates.sort(DefaultDBug.CONFIG_TEMPLATE_SORT);
@@ -135,6 +209,7 @@ public class DBugConfigSet {
 		});
 		if (updated[0])
 			saveConfig(configUrl);
+		fireConfigChanged(config, templates);
 	}
 
 	private void saveConfig(URL config) {
@@ -188,12 +263,22 @@ public class DBugConfigSet {
 			evtMap.put(i, events.get(evtMap.keySet().get(i)));
 		events = null;
 
+		long evalBudget = 0;
+		String budgetStr = config.get("eval-budget-us");
+		if (budgetStr != null) {
+			try {
+				evalBudget = Long.parseLong(budgetStr.trim()) * 1000;
+			} catch (NumberFormatException e) {
+				throw new DBugParseException("Bad eval-budget-us for config " + id + ": " + budgetStr, e);
+			}
+		}
+
 		return template[0] = new DBugConfigTemplate(id, schema, className, varMap.unmodifiable(), condition,
 			Collections.unmodifiableList(globalReporters),
-			evtMap.unmodifiable());
+			evtMap.unmodifiable(), evalBudget, config.is("async-variables", false), config.is("sample-conditions", false));
 	}
 
-	private static DBugConfigTemplateValue parseVariable(String configName, QommonsConfig varConfig) throws DBugParseException {
+	private DBugConfigTemplateValue parseVariable(String configName, QommonsConfig varConfig) throws DBugParseException {
 		DBugAntlrExpression expression;
 		try {
 			expression = parseExpression(varConfig);
@@ -203,12 +288,22 @@ public class DBugConfigSet {
 		return new DBugConfigTemplateValue(varConfig.get("name"), expression, varConfig.is("cache", true));
 	}
 
-	private static DBugAntlrExpression parseExpression(QommonsConfig subConfig) throws DBugParseException {
+	private DBugAntlrExpression parseExpression(QommonsConfig subConfig) throws DBugParseException {
 		String ref = subConfig.get("ref");
-		if (ref != null)
-			return new ExternalExpressionSpec(null, ref);
-		else
-			return ExpressionParser.compile(subConfig.getValue());
+		// Refs and inline expressions live in different key spaces
+		String key = ref != null ? "ref:" + ref : "expr:" + subConfig.getValue();
+		DBugAntlrExpression expression = theNewExpressions.get(key);
+		if (expression == null) {
+			expression = theExpressions.get(key);
+			if (expression == null) {
+				if (ref != null)
+					expression = new ExternalExpressionSpec(null, ref);
+				else
+					expression = ExpressionParser.compile(subConfig.getValue());
+			}
+			theNewExpressions.put(key, expression);
+		}
+		return expression;
 	}
 
 	private DBugEventConfigTemplate parseEvent(List<DBugEventReporter<?, ?, ?, ?, ?>> globalReporters, String configName,
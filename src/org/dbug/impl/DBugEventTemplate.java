@@ -3,32 +3,67 @@ package org.dbug.impl;
 import java.time.Instant;
 
 import org.dbug.DBugAnchor;
+import org.dbug.DBugContext;
 import org.dbug.DBugEvent;
 import org.dbug.DBugEventType;
 import org.dbug.DBugProcess;
 import org.qommons.collect.QuickSet.QuickMap;
 
 public class DBugEventTemplate<A> implements DBugEvent<A> {
-	private final DBugProcess theProcess;
-	private final long theEventId;
-	private final DefaultDBugAnchor<A> theAnchor;
-	private final DefaultDBugEventType<A> theType;
-	private final QuickMap<String, Object> theDynamicValues;
-	private final QuickMap<String, Object> theEventValues;
-	private final Instant theStartTime;
+	private DBugProcess theProcess;
+	private long theEventId;
+	private long theParentEventId;
+	private long theTraceId;
+	private DefaultDBugAnchor<A> theAnchor;
+	private DefaultDBugEventType<A> theType;
+	private QuickMap<String, Object> theDynamicValues;
+	private QuickMap<String, Object> theEventValues;
+	private Instant theStartTime;
 	private Instant theEndTime;
 
 	public DBugEventTemplate(DBugProcess process, long eventId, DefaultDBugAnchor<A> anchor, DefaultDBugEventType<A> type,
+		QuickMap<String, Object> dynamicValues, QuickMap<String, Object> eventValues, boolean transactional) {
+		init(process, eventId, anchor, type, dynamicValues, eventValues, transactional);
+	}
+
+	/** Creates an uninitialized event for pooling */
+	DBugEventTemplate() {}
+
+	DBugEventTemplate<A> init(DBugProcess process, long eventId, DefaultDBugAnchor<A> anchor, DefaultDBugEventType<A> type,
 		QuickMap<String, Object> dynamicValues, QuickMap<String, Object> eventValues, boolean transactional) {
 		theProcess = process;
 		theEventId = eventId;
+		theParentEventId = DBugContext.currentEventId();
+		theTraceId = theParentEventId < 0 ? eventId : DBugContext.currentTraceId();
 		theAnchor = anchor;
 		theType = type;
 		theDynamicValues = dynamicValues;
 		theEventValues = eventValues;
 		theStartTime = Instant.now();
-		if (!transactional)
-			theEndTime = theStartTime;
+		theEndTime = transactional ? null : theStartTime;
+		return this;
+	}
+
+	/** @return A copy of this event whose values will not change when this event is re-used from its pool */
+	DBugEventTemplate<A> snapshot() {
+		DBugEventTemplate<A> copy = new DBugEventTemplate<>();
+		copy.theProcess = theProcess;
+		copy.theEventId = theEventId;
+		copy.theParentEventId = theParentEventId;
+		copy.theTraceId = theTraceId;
+		copy.theAnchor = theAnchor;
+		copy.theType = theType;
+		copy.theDynamicValues = theDynamicValues.copy().unmodifiable();
+		copy.theEventValues = theEventValues.copy().unmodifiable();
+		copy.theStartTime = theStartTime;
+		copy.theEndTime = theEndTime;
+		return copy;
+	}
+
+	void clear() {
+		theAnchor = null;
+		theDynamicValues = null;
+		theEventValues = null;
 	}
 
 	@Override
@@ -41,6 +76,16 @@ public class DBugEventTemplate<A> implements DBugEvent<A> {
 		return theEventId;
 	}
 
+	@Override
+	public long getParentEventId() {
+		return theParentEventId;
+	}
+
+	@Override
+	public long getTraceId() {
+		return theTraceId;
+	}
+
 	@Override
 	public DBugAnchor<A> getAnchor() {
 		return theAnchor;
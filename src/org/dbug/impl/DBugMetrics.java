@@ -0,0 +1,300 @@
+package org.dbug.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.dbug.config.DBugEventReporter;
+import org.dbug.config.ExpressionCost;
+
+/**
+ * Counters and timers for the overhead of DBug, published as MXBeans. Counters are {@link LongAdder}s so that threads firing events don't
+ * contend on them. Config evaluations and reporter calls are timed once in {@link ExpressionCost#SAMPLE_INTERVAL} calls and the totals
+ * scaled to estimate the time spent.
+ */
+public class DBugMetrics implements DBugMetricsMXBean {
+	private static final String DOMAIN = "org.dbug";
+	private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+	private final MBeanServer theServer;
+	/** Appended to the names of the beans of every DBug instance but the first, so that they don't collide */
+	private final String theInstanceSuffix;
+	private final Supplier<Map<String, Integer>> theLiveAnchors;
+	private final LongAdder theEventsCreated;
+	private final LongAdder theEventsFiltered;
+	private final LongAdder theEventsDelivered;
+	private final LongAdder theEventsDropped;
+	private final LongAdder theConfigReloads;
+	private final LongAdder theConfigReloadNanos;
+	private volatile long theLastConfigReloadNanos;
+	private final ConcurrentHashMap<String, ConfigMetrics> theConfigs;
+	private final ConcurrentHashMap<DBugEventReporter<?, ?, ?, ?, ?>, ReporterMetrics> theReporters;
+	/** Shared by reporters not added via the config, which are not published */
+	private final ReporterMetrics theUnpublishedReporters;
+
+	DBugMetrics(Supplier<Map<String, Integer>> liveAnchors) {
+		theServer = ManagementFactory.getPlatformMBeanServer();
+		int instance = INSTANCES.getAndIncrement();
+		theInstanceSuffix = instance == 0 ? "" : ",instance=" + instance;
+		theLiveAnchors = liveAnchors;
+		theEventsCreated = new LongAdder();
+		theEventsFiltered = new LongAdder();
+		theEventsDelivered = new LongAdder();
+		theEventsDropped = new LongAdder();
+		theConfigReloads = new LongAdder();
+		theConfigReloadNanos = new LongAdder();
+		theConfigs = new ConcurrentHashMap<>();
+		theReporters = new ConcurrentHashMap<>();
+		theUnpublishedReporters = new ReporterMetrics(null);
+		register("type=DBug", this);
+	}
+
+	void eventCreated() {
+		theEventsCreated.increment();
+	}
+
+	void configReloaded(long nanos) {
+		theConfigReloads.increment();
+		theConfigReloadNanos.add(nanos);
+		theLastConfigReloadNanos = nanos;
+	}
+
+	/**
+	 * @param configId The ID of the config
+	 * @return The metrics for the config
+	 */
+	ConfigMetrics forConfig(String configId) {
+		return theConfigs.computeIfAbsent(configId, ConfigMetrics::new);
+	}
+
+	/** @param configId The ID of the config whose metrics to un-publish */
+	void removeConfig(String configId) {
+		ConfigMetrics metrics = theConfigs.remove(configId);
+		if (metrics != null && metrics.theObjectName != null)
+			unregister(metrics.theObjectName);
+	}
+
+	/**
+	 * Publishes metrics for a reporter
+	 *
+	 * @param name The name of the reporter in the config
+	 * @param reporter The reporter
+	 */
+	void addReporter(String name, DBugEventReporter<?, ?, ?, ?, ?> reporter) {
+		theReporters.put(reporter, new ReporterMetrics(name));
+	}
+
+	/** @param reporter The reporter whose metrics to un-publish */
+	void removeReporter(DBugEventReporter<?, ?, ?, ?, ?> reporter) {
+		ReporterMetrics metrics = theReporters.remove(reporter);
+		if (metrics != null && metrics.theObjectName != null)
+			unregister(metrics.theObjectName);
+	}
+
+	/**
+	 * @param reporter The reporter
+	 * @return The metrics for the reporter. Should be resolved when a config is compiled, not per event.
+	 */
+	ReporterMetrics forReporter(DBugEventReporter<?, ?, ?, ?, ?> reporter) {
+		ReporterMetrics metrics = theReporters.get(reporter);
+		return metrics != null ? metrics : theUnpublishedReporters;
+	}
+
+	@Override
+	public long getEventsCreated() {
+		return theEventsCreated.sum();
+	}
+
+	@Override
+	public long getEventsFiltered() {
+		return theEventsFiltered.sum();
+	}
+
+	@Override
+	public long getEventsDelivered() {
+		return theEventsDelivered.sum();
+	}
+
+	@Override
+	public long getEventsDropped() {
+		return theEventsDropped.sum();
+	}
+
+	@Override
+	public long getConfigReloads() {
+		return theConfigReloads.sum();
+	}
+
+	@Override
+	public long getConfigReloadMicros() {
+		return theConfigReloadNanos.sum() / 1000;
+	}
+
+	@Override
+	public long getLastConfigReloadMicros() {
+		return theLastConfigReloadNanos / 1000;
+	}
+
+	@Override
+	public Map<String, Integer> getLiveAnchors() {
+		return theLiveAnchors.get();
+	}
+
+	private ObjectName register(String properties, Object bean) {
+		try {
+			ObjectName name = new ObjectName(DOMAIN + ":" + properties + theInstanceSuffix);
+			theServer.registerMBean(bean, name);
+			return name;
+		} catch (JMException | RuntimeException e) {
+			System.err.println("Could not register DBug metrics " + properties);
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private void unregister(ObjectName name) {
+		try {
+			theServer.unregisterMBean(name);
+		} catch (JMException | RuntimeException e) {
+			System.err.println("Could not unregister DBug metrics " + name);
+			e.printStackTrace();
+		}
+	}
+
+	class ConfigMetrics implements ConfigMetricsMXBean {
+		final ObjectName theObjectName;
+		private final LongAdder theEvaluations;
+		private final LongAdder theEvaluationNanos;
+		private final LongAdder theFiltered;
+		private final LongAdder theDelivered;
+		private final LongAdder theErrors;
+		private final LongAdder theDemoted;
+		private int theSampleCount; // Deliberately unsynchronized, like ExpressionCost's
+
+		ConfigMetrics(String id) {
+			theEvaluations = new LongAdder();
+			theEvaluationNanos = new LongAdder();
+			theFiltered = new LongAdder();
+			theDelivered = new LongAdder();
+			theErrors = new LongAdder();
+			theDemoted = new LongAdder();
+			theObjectName = register("type=Config,id=" + ObjectName.quote(id), this);
+		}
+
+		/** @return Whether the next evaluation of the config for an event should be timed */
+		boolean shouldTime() {
+			return (++theSampleCount & (ExpressionCost.SAMPLE_INTERVAL - 1)) == 0;
+		}
+
+		/** @param nanos The time spent in the evaluation, or -1 if it was not timed (see {@link #shouldTime()}) */
+		void evaluated(long nanos) {
+			theEvaluations.increment();
+			if (nanos >= 0)
+				theEvaluationNanos.add(nanos * ExpressionCost.SAMPLE_INTERVAL);
+		}
+
+		void filtered() {
+			theFiltered.increment();
+			theEventsFiltered.increment();
+		}
+
+		void delivered() {
+			theDelivered.increment();
+			theEventsDelivered.increment();
+		}
+
+		void expressionError() {
+			theErrors.increment();
+		}
+
+		void expressionDemoted() {
+			theDemoted.increment();
+		}
+
+		@Override
+		public long getEvaluations() {
+			return theEvaluations.sum();
+		}
+
+		@Override
+		public long getEvaluationMicros() {
+			return theEvaluationNanos.sum() / 1000;
+		}
+
+		@Override
+		public long getEventsFiltered() {
+			return theFiltered.sum();
+		}
+
+		@Override
+		public long getEventsDelivered() {
+			return theDelivered.sum();
+		}
+
+		@Override
+		public long getExpressionErrors() {
+			return theErrors.sum();
+		}
+
+		@Override
+		public long getDemotedExpressions() {
+			return theDemoted.sum();
+		}
+	}
+
+	class ReporterMetrics implements ReporterMetricsMXBean {
+		final ObjectName theObjectName;
+		private final LongAdder theCalls;
+		private final LongAdder theNanos;
+		private final LongAdder theErrors;
+		private int theSampleCount; // Deliberately unsynchronized, like ExpressionCost's
+
+		ReporterMetrics(String name) {
+			theCalls = new LongAdder();
+			theNanos = new LongAdder();
+			theErrors = new LongAdder();
+			theObjectName = name == null ? null : register("type=Reporter,name=" + ObjectName.quote(name), this);
+		}
+
+		/** @return Whether the next call to the reporter should be timed */
+		boolean shouldTime() {
+			return (++theSampleCount & (ExpressionCost.SAMPLE_INTERVAL - 1)) == 0;
+		}
+
+		/**
+		 * @param nanos The time spent in the reporter, or -1 if the call was not {@link #shouldTime() timed}
+		 * @param error Whether the reporter threw an exception, dropping the event
+		 */
+		void called(long nanos, boolean error) {
+			theCalls.increment();
+			if (nanos >= 0)
+				theNanos.add(nanos * ExpressionCost.SAMPLE_INTERVAL);
+			if (error) {
+				theErrors.increment();
+				theEventsDropped.increment();
+			}
+		}
+
+		@Override
+		public long getCalls() {
+			return theCalls.sum();
+		}
+
+		@Override
+		public long getMicros() {
+			return theNanos.sum() / 1000;
+		}
+
+		@Override
+		public long getErrors() {
+			return theErrors.sum();
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package org.dbug.impl;
+
+import java.util.Map;
+
+/**
+ * Overhead metrics for DBug itself, published via JMX as <code>org.dbug:type=DBug</code>. The names of the beans of any DBug instance but
+ * the first have an additional <code>instance=&lt;n></code> property.
+ */
+public interface DBugMetricsMXBean {
+	/** @return The number of events fired on anchors with at least one active config */
+	long getEventsCreated();
+
+	/** @return The number of config-specific events discarded because their condition was false or could not be evaluated */
+	long getEventsFiltered();
+
+	/** @return The number of config-specific events passed to their reporters, summed over configs */
+	long getEventsDelivered();
+
+	/** @return The number of reporter calls that threw an exception, i.e. events that a reporter dropped */
+	long getEventsDropped();
+
+	long getConfigReloads();
+
+	long getConfigReloadMicros();
+
+	long getLastConfigReloadMicros();
+
+	/** @return The number of live anchors for each anchor type, by schema and class name */
+	Map<String, Integer> getLiveAnchors();
+
+	/** Metrics for a config, by ID, published as <code>org.dbug:type=Config,id=&lt;id></code> */
+	public interface ConfigMetricsMXBean {
+		/** @return The number of times this config's conditions and variables were evaluated for an anchor or event */
+		long getEvaluations();
+
+		/** @return The estimated total time spent evaluating this config's conditions and variables, from sampled evaluations */
+		long getEvaluationMicros();
+
+		long getEventsFiltered();
+
+		/** @return The number of events for this config that passed its conditions and were passed to its reporters */
+		long getEventsDelivered();
+
+		/** @return The number of times one of this config's conditions or variables failed to evaluate */
+		long getExpressionErrors();
+
+		/** @return The number of this config's expressions that have been demoted to sampled evaluation for exceeding its budget */
+		long getDemotedExpressions();
+	}
+
+	/** Metrics for a reporter, by name, published as <code>org.dbug:type=Reporter,name=&lt;name></code> */
+	public interface ReporterMetricsMXBean {
+		/** @return The number of calls to the reporter's eventOccurred and eventBegun methods */
+		long getCalls();
+
+		/** @return The estimated total time spent in the reporter's eventOccurred and eventBegun methods, from sampled calls */
+		long getMicros();
+
+		long getErrors();
+	}
+}
@@ -77,6 +77,15 @@ public class DefaultAnchorBuilder<T> implements DBugAnchorBuilder<T> {
 			() -> new DefaultDBugAnchor<>(theDebug, theType, theValue, theStaticValues.unmodifiable(), theDynamicValues));
 	}
 
+	/**
+	 * Creates a new anchor without checking for external parameters or registering it, for bulk creation
+	 * 
+	 * @return The new anchor, evaluated against the anchor type's current configs
+	 */
+	DefaultDBugAnchor<T> create() {
+		return new DefaultDBugAnchor<>(theDebug, theType, theValue, theStaticValues.unmodifiable(), theDynamicValues);
+	}
+
 	@Override
 	public DBugAnchor<T> buildIfSatisfied() {
 		if (theExternallySpecifiedParameters != null && !theExternallySpecifiedParameters.isEmpty()) {
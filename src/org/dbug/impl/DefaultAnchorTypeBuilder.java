@@ -32,7 +32,8 @@ public class DefaultAnchorTypeBuilder<T> implements DBugAnchorTypeBuilder<T> {
 			eb -> eb.withEventField("active", TypeTokens.get().BOOLEAN).withEventField("field", TypeTokens.get().STRING)
 				.withEventField("inactiveFieldValue", TypeTokens.get().of(Object.class)));
 		withEvent(DBugEventType.StandardEvents.VALUE_UPDATE.name(),
-			eb -> eb.withEventField("field", TypeTokens.get().STRING).withEventField("variables", STRING_SET_TYPE));
+			eb -> eb.withEventField("field", TypeTokens.get().STRING).withEventField("fields", STRING_SET_TYPE)
+				.withEventField("variables", STRING_SET_TYPE));
 	}
 
 	@Override
@@ -4,6 +4,9 @@ import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
@@ -11,9 +14,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -53,10 +56,13 @@ public class DefaultDBug implements DBugImplementation {
 	private final ConcurrentHashMap<StorageKey, DBugAnchorHolder> theAnchors;
 
 	private final SortedTreeList<DBugConfigTemplate> theConfigs;
-	private final AtomicLong theEventIdSequence;
+	private final EventIdGenerator theEventIds;
 	private final ConcurrentLinkedQueue<Runnable> theActionQueue;
+	private final long theUpdateCoalesceInterval;
+	private final ConcurrentLinkedQueue<PendingUpdate> thePendingUpdates;
 
 	private final DBugConfigSet theConfig;
+	private final DBugMetrics theMetrics;
 	private String theConfigString;
 	private URL theConfigUrl;
 	private String theConfigError;
@@ -64,20 +70,28 @@ public class DefaultDBug implements DBugImplementation {
 	long lastConfigCheck;
 	final long configCheckInterval = 1000;
 	final String configProperty = DBug.class.getName() + ".config";
+	/** The time window (in milliseconds) over which dynamic value updates on an anchor are coalesced into a single update, if any */
+	final String updateCoalesceProperty = DBug.class.getName() + ".update-coalesce";
+	/** The number of event IDs each thread claims at a time */
+	final String eventIdBlockProperty = DBug.class.getName() + ".event-id-block";
 
 	public DefaultDBug() {
 		theProcess = new DefaultDBugProcess();
 		theAnchorTypes = new ConcurrentHashMap<>();
 		theAnchors = new ConcurrentHashMap<>();
 		theConfigs = new SortedTreeList<>(true, CONFIG_TEMPLATE_SORT);
-		theEventIdSequence = new AtomicLong();
+		theEventIds = new EventIdGenerator(Math.max(1, Integer.getInteger(eventIdBlockProperty, 256)));
 		theActionQueue = new ConcurrentLinkedQueue<>();
+		theUpdateCoalesceInterval = Long.getLong(updateCoalesceProperty, 0);
+		thePendingUpdates = new ConcurrentLinkedQueue<>();
 		theConfig = new DBugConfigSet();
+		theMetrics = new DBugMetrics(this::countLiveAnchors);
 
 		checkConfig();
 		new Thread(() -> {
 			while (true) {
 				checkConfig();
+				flushPendingUpdates();
 				Runnable action = theActionQueue.poll();
 				while (action != null) {
 					action.run();
@@ -106,7 +120,20 @@ public class DefaultDBug implements DBugImplementation {
 					configURL = null;
 				if (!Objects.equals(theConfigUrl, configURL) || lastMod > lastConfigCheck) {
 					theConfigUrl = configURL;
-					theConfig.read(theConfigUrl, DefaultDBug.this);
+					long readStart = System.nanoTime();
+					try {
+						theConfig.read(theConfigUrl, DefaultDBug.this);
+						// Configs that didn't change survive the reload, so their disabled expressions must be re-enabled explicitly
+						for (BiTuple<String, String> key : theAnchorTypes.keySet()) {
+							theAnchorTypes.computeIfPresent(key, (k, anchorTypes) -> {
+								for (DefaultDBugAnchorType<?> at : anchorTypes)
+									at.resetErrors();
+								return anchorTypes;
+							});
+						}
+					} finally {
+						theMetrics.configReloaded(System.nanoTime() - readStart);
+					}
 				}
 			} catch (IOException e) {
 				if (!Objects.equals(theConfigString, config) || !Objects.equals(theConfigError, e.getMessage())) {
@@ -159,6 +186,7 @@ public class DefaultDBug implements DBugImplementation {
 
 	public void removeConfig(DBugConfigTemplate config) {
 		_removeConfig(config);
+		theMetrics.removeConfig(config.getID());
 	}
 
 	private <T> void _removeConfig(DBugConfigTemplate config) {
@@ -190,6 +218,8 @@ public class DefaultDBug implements DBugImplementation {
 	public void updateConfig(DBugConfigTemplate oldConfig, DBugConfigTemplate newConfig, Consumer<String> onError) {
 		if (oldConfig.getSchema().equals(newConfig.getSchema()) && oldConfig.getClassName().equals(newConfig.getClassName())) {
 			_updateConfig(oldConfig, newConfig, onError);
+			if (!oldConfig.getID().equals(newConfig.getID()))
+				theMetrics.removeConfig(oldConfig.getID());
 		} else {
 			removeConfig(oldConfig);
 			addConfig(newConfig, onError);
@@ -228,8 +258,22 @@ public class DefaultDBug implements DBugImplementation {
 		return theProcess;
 	}
 
+	public DBugMetrics getMetrics() {
+		return theMetrics;
+	}
+
+	private Map<String, Integer> countLiveAnchors() {
+		Map<String, Integer> counts = new TreeMap<>();
+		for (DBugAnchorHolder holder : theAnchors.values()) {
+			DefaultDBugAnchor<?> anchor = holder.weakRef.get();
+			if (anchor != null)
+				counts.merge(anchor.getType().toString(), 1, Integer::sum);
+		}
+		return counts;
+	}
+
 	public long getNextEventId() {
-		return theEventIdSequence.getAndIncrement();
+		return theEventIds.next();
 	}
 
 	@Override
@@ -237,8 +281,37 @@ public class DefaultDBug implements DBugImplementation {
 		theActionQueue.add(action);
 	}
 
+	boolean isCoalescingUpdates() {
+		return theUpdateCoalesceInterval > 0;
+	}
+
+	void deferUpdate(DefaultDBugAnchor<?> anchor) {
+		thePendingUpdates.add(new PendingUpdate(anchor, System.currentTimeMillis() + theUpdateCoalesceInterval));
+	}
+
+	private void flushPendingUpdates() {
+		if (thePendingUpdates.isEmpty())
+			return;
+		long now = System.currentTimeMillis();
+		// All updates are deferred by the same interval, so the queue is ordered by deadline
+		PendingUpdate update = thePendingUpdates.peek();
+		while (update != null && update.deadline <= now) {
+			thePendingUpdates.poll();
+			try {
+				update.anchor.flushPendingUpdates();
+			} catch (RuntimeException e) {
+				System.err.println("Error flushing updates for anchor " + update.anchor);
+				e.printStackTrace();
+			}
+			update = thePendingUpdates.peek();
+		}
+	}
+
 	@Override
 	public <T> DBugAnchorType<T> declare(String schema, Class<T> type, Consumer<DBugAnchorTypeBuilder<T>> builder) {
+		DefaultAnchorTypeBuilder<T> b = new DefaultAnchorTypeBuilder<>(type);
+		builder.accept(b);
+		List<Object> declaration = DefaultDBugAnchorType.declaration(b.theValues, b.theEvents);
 		DefaultDBugAnchorType<T>[] ret = new DefaultDBugAnchorType[1];
 		theAnchorTypes.compute(new BiTuple<>(schema, type.getName()), (k, ats) -> {
 			List<DefaultDBugAnchorType<T>> anchorTypes = (List<DefaultDBugAnchorType<T>>) ats;
@@ -246,14 +319,15 @@ public class DefaultDBug implements DBugImplementation {
 				ats = anchorTypes = new LinkedList<>();
 			} else {
 				for (DefaultDBugAnchorType<T> at : anchorTypes) {
-					if (at.theBuilderClass.equals(builder.getClass())) {
+					// The same builder class may declare different things, e.g. a lambda in a common utility
+					if (at.theBuilderClass.equals(builder.getClass()) && at.theDeclaration.equals(declaration)) {
 						ret[0] = at;
 						break;
 					}
 				}
 			}
 			if (ret[0] == null) {
-				ret[0] = buildAnchorType(schema, type, builder);
+				ret[0] = buildAnchorType(schema, type, builder.getClass(), b);
 				anchorTypes.add(ret[0]);
 			}
 			return anchorTypes;
@@ -261,10 +335,9 @@ public class DefaultDBug implements DBugImplementation {
 		return ret[0];
 	}
 
-	private <T> DefaultDBugAnchorType<T> buildAnchorType(String schema, Class<T> clazz, Consumer<DBugAnchorTypeBuilder<T>> builder) {
-		DefaultAnchorTypeBuilder<T> b = new DefaultAnchorTypeBuilder<>(clazz);
-		builder.accept(b);
-		DefaultDBugAnchorType<T> at = new DefaultDBugAnchorType<>(this, schema, clazz, builder.getClass(), b.theValues, b.theEvents);
+	private <T> DefaultDBugAnchorType<T> buildAnchorType(String schema, Class<T> clazz, Class<?> builderClass,
+		DefaultAnchorTypeBuilder<T> b) {
+		DefaultDBugAnchorType<T> at = new DefaultDBugAnchorType<>(this, schema, clazz, builderClass, b.theValues, b.theEvents);
 		try (Transaction t = theConfigs.lock(false, null)) {
 			CollectionElement<DBugConfigTemplate> config = theConfigs.search(cfg -> clazz.getName().compareTo(cfg.getClassName()),
 				BetterSortedList.SortedSearchFilter.PreferLess);
@@ -311,6 +384,21 @@ public class DefaultDBug implements DBugImplementation {
 		return new DefaultAnchorBuilder<>(this, type, value);
 	}
 
+	<T> List<DBugAnchor<T>> debugAll(DefaultDBugAnchorType<T> type, Iterable<? extends T> values) {
+		List<DBugAnchor<T>> anchors = values instanceof Collection ? new ArrayList<>(((Collection<?>) values).size()) : new ArrayList<>();
+		if (theConfigUrl == null || type.getConfigs().isEmpty()) {
+			DBugAnchor<T> inactive = type.inactive();
+			for (T value : values)
+				anchors.add(inactive);
+			return Collections.unmodifiableList(anchors);
+		}
+		for (T value : values) {
+			// Like debug(), each anchor resolves the type's configs as it is created, so config changes mid-batch are honored
+			anchors.add(buildAnchor(type, value, () -> new DefaultAnchorBuilder<>(this, type, value).create()));
+		}
+		return Collections.unmodifiableList(anchors);
+	}
+
 	<T> DefaultDBugAnchor<T> buildAnchor(DefaultDBugAnchorType<T> type, T value, Supplier<DefaultDBugAnchor<T>> supplier) {
 		return theAnchors.compute(new WeakStorageKey(type, value), (k, h) -> {
 			if (h == null || !h.hold())
@@ -343,6 +431,16 @@ public class DefaultDBug implements DBugImplementation {
 		}
 	}
 
+	private static class PendingUpdate {
+		final DefaultDBugAnchor<?> anchor;
+		final long deadline;
+
+		PendingUpdate(DefaultDBugAnchor<?> anchor, long deadline) {
+			this.anchor = anchor;
+			this.deadline = deadline;
+		}
+	}
+
 	private static abstract class StorageKey {
 		final DBugAnchorType<?> theAnchorType;
 		final int hashCode;
@@ -2,22 +2,30 @@ package org.dbug.impl;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
 import java.util.stream.Collectors;
 
 import org.dbug.DBugAnchor;
+import org.dbug.DBugAnchorUpdate;
+import org.dbug.DBugContext;
 import org.dbug.DBugEventBuilder;
+import org.dbug.DBugEventHandle;
 import org.dbug.DBugEventType;
 import org.dbug.DBugProcess;
 import org.dbug.config.DBugConfig;
@@ -27,9 +35,12 @@ import org.dbug.config.DBugConfig.DBugEventValue;
 import org.dbug.config.DBugConfigEvent;
 import org.dbug.config.DBugConfiguredAnchor;
 import org.dbug.config.DBugEventReporter;
+import org.dbug.config.ExpressionCost;
+import org.dbug.config.ExpressionErrors;
 import org.dbug.expression.ConstantExpression;
 import org.dbug.expression.DBugParseException;
 import org.dbug.expression.Expression;
+import org.dbug.expression.SharedExpression;
 import org.qommons.Transaction;
 import org.qommons.collect.QuickSet.QuickMap;
 
@@ -43,6 +54,23 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 
 	final List<DBugConfigInstance> theConfigs;
 	int isActive;
+	/**
+	 * For each event type (by index), the event configs of active configs that are interested in it. Rebuilt whenever configs are added,
+	 * removed or updated and whenever a config's condition changes, so events can be dispatched without looking at other configs.
+	 */
+	private volatile DBugEventConfigInstance[][] theSubscribers;
+	/** Bit i is set if {@link #theSubscribers}[i] is not empty, for the first 64 event types */
+	private volatile long theSubscribedEvents;
+
+	/** Lock-free counters for fields modified with {@link #add(String, long)} or {@link #accumulate(String, long, LongBinaryOperator)} */
+	private final AtomicReferenceArray<AtomicLong> theCounters;
+	private volatile boolean hasCounters;
+	/** Dynamic fields that configured conditions, variables, or update events care about */
+	private volatile BitSet theWatchedFields;
+	private final AtomicBoolean isCounterFlushQueued;
+	/** Fields changed since the last flush when updates are being coalesced by time */
+	private BitSet thePendingFields;
+	private Object[] thePendingOldValues;
 
 	DefaultDBugAnchor(DefaultDBug dBug, DefaultDBugAnchorType<A> type, A value, QuickMap<String, Object> staticValues,
 		QuickMap<String, Object> dynamicValues) {
@@ -52,11 +80,14 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 		theStaticValues = staticValues;
 		theDynamicValues = dynamicValues;
 		theCompiledAnchors = new IdentityHashMap<>();
+		theCounters = new AtomicReferenceArray<>(dynamicValues.keySet().size());
+		isCounterFlushQueued = new AtomicBoolean();
 
 		theConfigs = new LinkedList<>();
+		theSubscribers = new DefaultDBugAnchor.DBugEventConfigInstance[type.getEventTypes().keySet().size()][0];
 		long eventId = -1;
 		for (DBugConfig<A> cfg : theType.getConfigs()) {
-			if (eventId == -1 && cfg.getEvents().get(theType.theActiveEventIndex) != null)
+			if (eventId == -1 && !cfg.getEvents().get(theType.theActiveEventIndex).isEmpty())
 				eventId = theDBug.getNextEventId();
 			addConfig(cfg, eventId);
 		}
@@ -77,6 +108,14 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 		return isActive > 0;
 	}
 
+	@Override
+	public boolean isSubscribed(DBugEventHandle<A> event) {
+		int index = checkHandle(event).getEventIndex();
+		if (index < 64)
+			return (theSubscribedEvents & (1L << index)) != 0;
+		return theSubscribers[index].length > 0;
+	}
+
 	@Override
 	public QuickMap<String, Object> getStaticValues() {
 		return theStaticValues;
@@ -84,30 +123,236 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 
 	@Override
 	public QuickMap<String, Object> getDynamicValues() {
-		return theDynamicValues.unmodifiable();
+		if (!hasCounters)
+			return theDynamicValues.unmodifiable();
+		return theDynamicValues.keySet().createDynamicMap(this::getDynamicValue);
+	}
+
+	void copyDynamicValues(QuickMap<String, Object> target) {
+		for (int i = 0; i < target.keySet().size(); i++)
+			target.put(i, getDynamicValue(i));
+	}
+
+	private Object getDynamicValue(int index) {
+		AtomicLong counter = theCounters.get(index);
+		if (counter != null)
+			return boxCounter(index, counter.get());
+		return theDynamicValues.get(index);
+	}
+
+	@Override
+	public <P> P setDynamicValue(String property, P value) {
+		return setDynamicValue(theDynamicValues.keyIndex(property), value);
+	}
+
+	@Override
+	public synchronized <P> P setDynamicValue(int index, P value) {
+		P old = (P) putDynamicValue(index, value);
+		if (theDBug.isCoalescingUpdates())
+			deferUpdate(index, old);
+		else {
+			BitSet changed = new BitSet();
+			changed.set(index);
+			Object[] oldValues = new Object[theDynamicValues.keySet().size()];
+			oldValues[index] = old;
+			updateDynamicValues(changed, oldValues);
+		}
+		return old;
+	}
+
+	private Object putDynamicValue(int index, Object value) {
+		AtomicLong counter = theCounters.get(index);
+		Object old;
+		if (counter != null) {
+			// Write through the counter, which may be concurrently added to, rather than replacing it
+			if (value != null && !isIntegral(value.getClass()))
+				throw new IllegalArgumentException("Dynamic field " + theType + "." + theDynamicValues.keySet().get(index)
+					+ " is used as a counter and cannot be set to " + value.getClass().getName());
+			long newValue = value == null ? 0 : ((Number) value).longValue();
+			old = boxCounter(index, counter.getAndSet(newValue));
+			theDynamicValues.put(index, boxCounter(index, newValue));
+		} else
+			old = theDynamicValues.put(index, value);
+		return old;
 	}
 
 	@Override
-	public synchronized <P> P setDynamicValue(String property, P value) {
+	public DBugAnchorUpdate<A> updates() {
+		return new DefaultAnchorUpdate();
+	}
+
+	@Override
+	public long add(String property, long delta) {
 		int index = theDynamicValues.keyIndex(property);
-		P old = (P) theDynamicValues.put(index, value);
+		AtomicLong counter = getCounter(index);
+		long prev, next;
+		do {
+			prev = counter.get();
+			next = prev + delta;
+			// Long overflow is when the operands have the same sign and the result's sign differs
+			if (((prev ^ next) & (delta ^ next)) < 0)
+				throw counterOverflow(index, prev, delta > 0 ? "+" + delta : String.valueOf(delta));
+			checkCounterRange(index, prev, next);
+		} while (!counter.compareAndSet(prev, next));
+		counterChanged(index);
+		return next;
+	}
+
+	@Override
+	public long accumulate(String property, long value, LongBinaryOperator op) {
+		int index = theDynamicValues.keyIndex(property);
+		AtomicLong counter = getCounter(index);
+		long prev, next;
+		do {
+			prev = counter.get();
+			next = op.applyAsLong(prev, value);
+			checkCounterRange(index, prev, next);
+		} while (!counter.compareAndSet(prev, next));
+		counterChanged(index);
+		return next;
+	}
+
+	/** Counters don't silently wrap for int, short or byte fields, since the value returned from add would disagree with the field */
+	private void checkCounterRange(int index, long prev, long next) {
+		Class<?> type = theType.getDynamicFields().get(index).type.getRawType();
+		long min, max;
+		if (type == Integer.class || type == int.class) {
+			min = Integer.MIN_VALUE;
+			max = Integer.MAX_VALUE;
+		} else if (type == Short.class || type == short.class) {
+			min = Short.MIN_VALUE;
+			max = Short.MAX_VALUE;
+		} else if (type == Byte.class || type == byte.class) {
+			min = Byte.MIN_VALUE;
+			max = Byte.MAX_VALUE;
+		} else
+			return;
+		if (next < min || next > max)
+			throw counterOverflow(index, prev, "-> " + next);
+	}
+
+	private IllegalArgumentException counterOverflow(int index, long prev, String change) {
+		return new IllegalArgumentException("Dynamic field " + theType + "." + theDynamicValues.keySet().get(index) + " ("
+			+ theType.getDynamicFields().get(index).type + ") would overflow: " + prev + " " + change);
+	}
+
+	private AtomicLong getCounter(int index) {
+		AtomicLong counter = theCounters.get(index);
+		if (counter != null)
+			return counter;
+		// Seeded under the lock so that a concurrent setDynamicValue isn't lost between reading the value and installing the counter
+		synchronized (this) {
+			counter = theCounters.get(index);
+			if (counter != null)
+				return counter;
+			Class<?> type = theType.getDynamicFields().get(index).type.getRawType();
+			Object current = theDynamicValues.get(index);
+			// Number- and Object-typed fields may be counters as long as they hold integers
+			if (!(isIntegral(type) || type == Number.class || type == Object.class) || (current != null && !isIntegral(current.getClass())))
+				throw new IllegalArgumentException("Dynamic field " + theType + "." + theDynamicValues.keySet().get(index)
+					+ " is not integral and cannot be used as a counter: " + (current == null ? type : current.getClass()).getName());
+			counter = new AtomicLong(current == null ? 0 : ((Number) current).longValue());
+			theCounters.set(index, counter);
+			hasCounters = true;
+			return counter;
+		}
+	}
+
+	private void counterChanged(int index) {
+		BitSet watched = theWatchedFields;
+		// Nobody cares about this field except as a value to report, which getDynamicValues() takes care of
+		if (watched == null || !watched.get(index))
+			return;
+		// Coalesce all changes to counters on this anchor into a single re-evaluation on the reporting thread
+		if (isCounterFlushQueued.compareAndSet(false, true))
+			theDBug.queueAction(this::flushCounters);
+	}
+
+	private synchronized void flushCounters() {
+		isCounterFlushQueued.set(false);
+		BitSet changed = null;
+		Object[] oldValues = null;
+		for (int i = 0; i < theCounters.length(); i++) {
+			AtomicLong counter = theCounters.get(i);
+			if (counter == null)
+				continue;
+			Object value = boxCounter(i, counter.get());
+			Object old = theDynamicValues.get(i);
+			if (!value.equals(old)) {
+				theDynamicValues.put(i, value);
+				if (changed == null) {
+					changed = new BitSet();
+					oldValues = new Object[theCounters.length()];
+				}
+				changed.set(i);
+				oldValues[i] = old;
+			}
+		}
+		if (changed != null)
+			updateDynamicValues(changed, oldValues);
+	}
+
+	private Object boxCounter(int index, long value) {
+		Class<?> type = theType.getDynamicFields().get(index).type.getRawType();
+		if (type == Integer.class || type == int.class)
+			return (int) value;
+		else if (type == Short.class || type == short.class)
+			return (short) value;
+		else if (type == Byte.class || type == byte.class)
+			return (byte) value;
+		else
+			return value;
+	}
+
+	private static boolean isIntegral(Class<?> type) {
+		return type == Long.class || type == long.class || type == Integer.class || type == int.class || type == Short.class
+			|| type == short.class || type == Byte.class || type == byte.class;
+	}
+
+	private synchronized void updateWatchedFields() {
+		BitSet watched = new BitSet();
+		for (DBugConfigInstance config : theConfigs) {
+			if (!config.events.get(theType.theUpdateEventIndex).isEmpty()) {
+				watched.set(0, theDynamicValues.keySet().size());
+				break;
+			}
+			if (config.condition.expressionConfig.dynamicDependencies != null)
+				watched.or(config.condition.expressionConfig.dynamicDependencies);
+			for (int i = 0; i < config.variables.keySet().size(); i++) {
+				AnchorEvaluatedExpression<?> variable = config.variables.get(i);
+				if (variable != null && variable.expressionConfig.dynamicDependencies != null)
+					watched.or(variable.expressionConfig.dynamicDependencies);
+			}
+		}
+		theWatchedFields = watched.isEmpty() ? null : watched;
+	}
+
+	private void updateDynamicValues(BitSet changed, Object[] oldValues) {
+		// Sub-expressions shared between a config's variables and condition are only evaluated once for the update
+		try (Transaction t = SharedExpression.scope(theValue); CompiledEvents compiledEvents = CompiledEvents.open()) {
+			_updateDynamicValues(changed, oldValues, compiledEvents);
+		}
+	}
+
+	private void _updateDynamicValues(BitSet changed, Object[] oldValues, CompiledEvents compiledEvents) {
 		long eventId = -1;
 		QuickMap<String, Object> dvCopy = null;
-		IdentityHashMap<DBugEventReporter<?, ?, ?, ?, ?>, Object> compiledEvents = null;
+		Set<String> fieldsChanged = null;
+		boolean activityChanged = false;
 		for (DBugConfigInstance config : theConfigs) {
-			// We want to do only enough work here to figure out if the config is now interested in the anchor given the new dynamic value
+			// We want to do only enough work here to figure out if the config is now interested in the anchor given the new dynamic values
 			boolean preActive = !config.condition.error && config.condition.get();
 			BitSet conditionDDs = config.condition.expressionConfig.dynamicDependencies;
 			BitSet conditionCVDs = config.condition.expressionConfig.configValueDependencies;
 			boolean error = false;
-			if (conditionDDs != null && conditionDDs.get(index)) {
-				// The condition may have changed as a result of the new dynamic value
+			if (conditionDDs != null && conditionDDs.intersects(changed)) {
+				// The condition may have changed as a result of the new dynamic values
 				// First re-evaluate all the config variables that the condition uses
 				if (conditionCVDs != null) {
 					for (int i = conditionCVDs.nextSetBit(0); i >= 0; i = conditionCVDs.nextSetBit(i + 1)) {
 						AnchorEvaluatedExpression<?> variable = config.variables.get(i);
 						if (variable.expressionConfig.dynamicDependencies != null
-							&& variable.expressionConfig.dynamicDependencies.get(index))
+							&& variable.expressionConfig.dynamicDependencies.intersects(changed))
 							variable.reevaluate();
 						error = variable.error;
 						if (!preActive && error)
@@ -124,23 +369,31 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 				// re-evaluate the other variables which may have changed
 				for (int i = 0; i < config.variables.keySet().size(); i++) {
 					AnchorEvaluatedExpression<?> variable = config.variables.get(i);
-					if (variable.expressionConfig.dynamicDependencies != null && variable.expressionConfig.dynamicDependencies.get(index)//
+					if (variable.expressionConfig.dynamicDependencies != null
+						&& variable.expressionConfig.dynamicDependencies.intersects(changed)//
 						&& (conditionCVDs == null || !conditionCVDs.get(i)))
 						variable.reevaluate();
 				}
 			}
 			if (preActive && postActive) {
 				List<DBugEventConfigInstance> updateEventConfigs = config.events.get(theType.theUpdateEventIndex);
-				if (updateEventConfigs != null) {
+				if (!updateEventConfigs.isEmpty()) {
 					// The config wants to know when any values change
 					if (eventId == -1) {
 						eventId = theDBug.getNextEventId();
-						dvCopy = theDynamicValues.copy().unmodifiable();
+						dvCopy = getDynamicValues().copy().unmodifiable();
+					}
+					if (fieldsChanged == null) {
+						fieldsChanged = new LinkedHashSet<>();
+						for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1))
+							fieldsChanged.add(theDynamicValues.keySet().get(i));
+						fieldsChanged = Collections.unmodifiableSet(fieldsChanged);
 					}
 					Set<String> varsChanged = null;
 					for (int i = 0; i < config.variables.keySet().size(); i++) {
 						AnchorEvaluatedExpression<?> variable = config.variables.get(i);
-						if (variable.expressionConfig.dynamicDependencies.get(index)) {
+						if (variable.expressionConfig.dynamicDependencies != null
+							&& variable.expressionConfig.dynamicDependencies.intersects(changed)) {
 							if (varsChanged == null)
 								varsChanged = new HashSet<>();
 							varsChanged.add(config.variables.keySet().get(i));
@@ -151,17 +404,16 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 					DefaultDBugEventType<A> updateEventType = (DefaultDBugEventType<A>) theType.getEventTypes()
 						.get(theType.theUpdateEventIndex);
 					QuickMap<String, Object> eventValues = updateEventType.getEventFields().keySet().createMap();
-					eventValues.put("field", property);
+					eventValues.put("field", theDynamicValues.keySet().get(changed.nextSetBit(0)));
+					eventValues.put("fields", fieldsChanged);
 					eventValues.put("variables", varsChanged);
 					eventValues = eventValues.unmodifiable();
-					for (DBugEventConfigInstance evtConfig : updateEventConfigs) {
-						ConfigSpecificEvent cse = new ConfigSpecificEvent(//
-							new DBugEventTemplate<>(theDBug.getProcess(), eventId, this, updateEventType, dvCopy, eventValues, false), //
-							evtConfig);
-						if (cse.active) {
-							if (compiledEvents == null)
-								compiledEvents = new IdentityHashMap<>();
-							cse.occurred(compiledEvents);
+					try (Transaction t = SharedExpression.scope(theValue)) {
+						for (DBugEventConfigInstance evtConfig : updateEventConfigs) {
+							ConfigSpecificEvent cse = evtConfig.createEvent(//
+								new DBugEventTemplate<>(theDBug.getProcess(), eventId, this, updateEventType, dvCopy, eventValues, false));
+							if (cse != null)
+								cse.occurred(compiledEvents);
 						}
 					}
 				}
@@ -170,21 +422,77 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 			else if (preActive)
 				isActive--;
 			if (preActive != postActive) {
+				activityChanged = true;
 				if (eventId == -1) {
 					eventId = theDBug.getNextEventId();
-					dvCopy = theDynamicValues.copy().unmodifiable();
+					dvCopy = getDynamicValues().copy().unmodifiable();
+				}
+				// Report the first changed field that the condition depends on as the one that caused the transition
+				int index = -1;
+				if (conditionDDs != null) {
+					for (index = changed.nextSetBit(0); index >= 0 && !conditionDDs.get(index); index = changed.nextSetBit(index + 1)) {}
 				}
-				fireActive(config, postActive, property, postActive ? old : value, eventId, dvCopy);
+				if (index < 0)
+					index = changed.nextSetBit(0);
+				fireActive(config, postActive, theDynamicValues.keySet().get(index),
+					postActive ? oldValues[index] : theDynamicValues.get(index), eventId, dvCopy, compiledEvents);
 			}
 		}
-		return old;
+		if (activityChanged)
+			updateSubscribers();
+	}
+
+	private void updateSubscribers() {
+		DBugEventConfigInstance[][] subscribers = new DefaultDBugAnchor.DBugEventConfigInstance[theType.getEventTypes().keySet()
+			.size()][];
+		List<DBugEventConfigInstance> eventSubscribers = new ArrayList<>();
+		long subscribed = 0;
+		for (int e = 0; e < subscribers.length; e++) {
+			for (DBugConfigInstance config : theConfigs) {
+				if (config.isConditionTrue())
+					eventSubscribers.addAll(config.events.get(e));
+			}
+			subscribers[e] = eventSubscribers.toArray(new DefaultDBugAnchor.DBugEventConfigInstance[eventSubscribers.size()]);
+			if (e < 64 && !eventSubscribers.isEmpty())
+				subscribed |= 1L << e;
+			eventSubscribers.clear();
+		}
+		theSubscribers = subscribers;
+		theSubscribedEvents = subscribed;
+	}
+
+	private void deferUpdate(int index, Object oldValue) {
+		if (thePendingFields == null) {
+			thePendingFields = new BitSet();
+			thePendingOldValues = new Object[theDynamicValues.keySet().size()];
+			theDBug.deferUpdate(this);
+		}
+		if (!thePendingFields.get(index)) {
+			thePendingFields.set(index);
+			thePendingOldValues[index] = oldValue;
+		}
+	}
+
+	synchronized void flushPendingUpdates() {
+		BitSet changed = thePendingFields;
+		if (changed == null)
+			return;
+		Object[] oldValues = thePendingOldValues;
+		thePendingFields = null;
+		thePendingOldValues = null;
+		// Values that were changed and then changed back within the window are not updates
+		for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+			if (Objects.equals(oldValues[i], theDynamicValues.get(i)))
+				changed.clear(i);
+		}
+		if (!changed.isEmpty())
+			updateDynamicValues(changed, oldValues);
 	}
 
 	private void fireActive(DBugConfigInstance config, boolean active, String field, Object inactiveValue, long eventId,
-		QuickMap<String, Object> dvCopy) {
+		QuickMap<String, Object> dvCopy, CompiledEvents compiledEvents) {
 		List<DBugEventConfigInstance> activeEventConfigs = config.events.get(theType.theActiveEventIndex);
 		if (!activeEventConfigs.isEmpty()) {
-			IdentityHashMap<DBugEventReporter<?, ?, ?, ?, ?>, Object> compiledEvents = null;
 			DefaultDBugEventType<A> activeEventType = (DefaultDBugEventType<A>) theType.getEventTypes().get(theType.theActiveEventIndex);
 			// The config wants to know when an anchor becomes active or inactive
 			QuickMap<String, Object> eventValues = activeEventType.getEventFields().keySet().createMap();
@@ -192,13 +500,12 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 			eventValues.put("field", field);
 			eventValues.put("inactiveFieldValue", inactiveValue);
 			eventValues = eventValues.unmodifiable();
-			for (DBugEventConfigInstance evtConfig : activeEventConfigs) {
-				ConfigSpecificEvent cse = new ConfigSpecificEvent(//
-					new DBugEventTemplate<>(theDBug.getProcess(), eventId, this, activeEventType, dvCopy, eventValues, false), evtConfig);
-				if (cse.active) {
-					if (compiledEvents == null)
-						compiledEvents = new IdentityHashMap<>();
-					cse.occurred(new HashMap<>());
+			try (Transaction t = SharedExpression.scope(theValue)) {
+				for (DBugEventConfigInstance evtConfig : activeEventConfigs) {
+					ConfigSpecificEvent cse = evtConfig.createEvent(//
+						new DBugEventTemplate<>(theDBug.getProcess(), eventId, this, activeEventType, dvCopy, eventValues, false));
+					if (cse != null)
+						cse.occurred(compiledEvents);
 				}
 			}
 		}
@@ -206,7 +513,7 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 
 	@Override
 	public synchronized <P> DBugAnchor<A> modifyDynamicValue(String property, Function<? super P, ? extends P> map) {
-		setDynamicValue(property, map.apply((P) theDynamicValues.get(property)));
+		setDynamicValue(property, map.apply((P) getDynamicValue(theDynamicValues.keyIndex(property))));
 		return this;
 	}
 
@@ -214,59 +521,195 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 	public DBugEventBuilder event(String eventName) {
 		if (isActive == 0)
 			return DoNothingEventBuilder.INSTANCE;
-		return new DefaultDBugEventBuilder<A>(theDBug, this, (DefaultDBugEventType<A>) theType.getEventTypes().get(eventName));
+		return createBuilder((DefaultDBugEventType<A>) theType.getEventTypes().get(eventName));
 	}
 
-	public Transaction beginEvent(DBugEventTemplate<A> event) {
-		List<ConfigSpecificEvent> configEvents = createConfigEvents(event);
-		IdentityHashMap<DBugEventReporter<?, ?, ?, ?, ?>, Object> compiledEvents = new IdentityHashMap<>();
-		for (ConfigSpecificEvent configEvent : configEvents) {
-			if (configEvent != null)
-				configEvent.begun(compiledEvents);
+	private DefaultDBugEventBuilder<A> createBuilder(DefaultDBugEventType<A> type) {
+		if (theType.isRetainingEvents())
+			return new DefaultDBugEventBuilder<>(theDBug, this, type);
+		else
+			return type.acquireBuilder(theDBug, this);
+	}
+
+	@Override
+	public DBugEventBuilder event(DBugEventHandle<A> event) {
+		if (isActive == 0 || !isSubscribed(event))
+			return DoNothingEventBuilder.INSTANCE;
+		return createBuilder(checkHandle(event));
+	}
+
+	private DefaultDBugEventType<A> checkHandle(DBugEventHandle<A> event) {
+		if (event.getEventType().getAnchorType() != theType)
+			throw new IllegalArgumentException("Event " + event.getEventType() + " does not belong to anchor type " + theType);
+		return (DefaultDBugEventType<A>) event;
+	}
+
+	@Override
+	public void fire(DBugEventHandle<A> event) {
+		if (isActive == 0)
+			return;
+		fireEvent(checkHandle(event), 0, null, null, null, null);
+	}
+
+	@Override
+	public void fire(DBugEventHandle<A> event, Object value0) {
+		if (isActive == 0)
+			return;
+		fireEvent(checkHandle(event), 1, value0, null, null, null);
+	}
+
+	@Override
+	public void fire(DBugEventHandle<A> event, Object value0, Object value1) {
+		if (isActive == 0)
+			return;
+		fireEvent(checkHandle(event), 2, value0, value1, null, null);
+	}
+
+	@Override
+	public void fire(DBugEventHandle<A> event, Object value0, Object value1, Object value2) {
+		if (isActive == 0)
+			return;
+		fireEvent(checkHandle(event), 3, value0, value1, value2, null);
+	}
+
+	@Override
+	public void fire(DBugEventHandle<A> event, Object... values) {
+		if (isActive == 0)
+			return;
+		fireEvent(checkHandle(event), values.length, null, null, null, values);
+	}
+
+	private void fireEvent(DefaultDBugEventType<A> type, int count, Object value0, Object value1, Object value2, Object[] values) {
+		if (count != type.getFieldCount())
+			throw new IllegalArgumentException("Event " + type + " requires " + type.getFieldCount() + " values, not " + count);
+		if (!theType.isRetainingEvents()) {
+			DefaultDBugEventBuilder<A> builder = type.acquireBuilder(theDBug, this);
+			if (values != null) {
+				for (int i = 0; i < count; i++)
+					builder.with(i, values[i]);
+			} else {
+				if (count > 0)
+					builder.with(0, value0);
+				if (count > 1)
+					builder.with(1, value1);
+				if (count > 2)
+					builder.with(2, value2);
+			}
+			builder.occurred();
+			return;
 		}
-		return () -> {
+		QuickMap<String, Object> eventValues = type.getEventFields().keySet().createMap();
+		if (values != null) {
+			for (int i = 0; i < count; i++)
+				eventValues.put(type.getFieldQuickIndex(i), values[i]);
+		} else {
+			if (count > 0)
+				eventValues.put(type.getFieldQuickIndex(0), value0);
+			if (count > 1)
+				eventValues.put(type.getFieldQuickIndex(1), value1);
+			if (count > 2)
+				eventValues.put(type.getFieldQuickIndex(2), value2);
+		}
+		eventOccurred(new DBugEventTemplate<>(theDBug.getProcess(), theDBug.getNextEventId(), this, type,
+			getDynamicValues().copy().unmodifiable(), eventValues.unmodifiable(), false));
+	}
+
+	public Transaction beginEvent(DBugEventTemplate<A> event) {
+		List<ConfigSpecificEvent> configEvents = createConfigEvents(event, true);
+		if (configEvents.isEmpty())
+			return Transaction.NONE;
+		// Events begun inside this one (on this thread or wherever the context is propagated to) are nested under it
+		Transaction frame = DBugContext.pushEvent(event);
+		try (CompiledEvents compiledEvents = CompiledEvents.open()) {
 			for (ConfigSpecificEvent configEvent : configEvents) {
 				if (configEvent != null)
-					configEvent.ended();
+					configEvent.begun(compiledEvents);
+			}
+		}
+		return () -> {
+			try {
+				for (ConfigSpecificEvent configEvent : configEvents) {
+					if (configEvent != null)
+						configEvent.ended();
+				}
+			} finally {
+				frame.close();
 			}
 		};
 	}
 
 	public void eventOccurred(DBugEventTemplate<A> event) {
-		List<ConfigSpecificEvent> configEvents = createConfigEvents(event);
-		IdentityHashMap<DBugEventReporter<?, ?, ?, ?, ?>, Object> compiledEvents = null;
-		for (ConfigSpecificEvent configEvent : configEvents) {
-			if (configEvent != null) {
-				if (compiledEvents == null)
-					compiledEvents = new IdentityHashMap<>();
-				configEvent.occurred(compiledEvents);
+		List<ConfigSpecificEvent> configEvents = createConfigEvents(event, false);
+		if (configEvents.isEmpty())
+			return;
+		try (CompiledEvents compiledEvents = CompiledEvents.open()) {
+			for (ConfigSpecificEvent configEvent : configEvents) {
+				if (configEvent != null && configEvent.hasDeferredVariables)
+					configEvent.occurLater();
+				else if (configEvent != null)
+					configEvent.occurred(compiledEvents);
 			}
 		}
 	}
 
-	private synchronized List<ConfigSpecificEvent> createConfigEvents(DBugEventTemplate<A> event) {
-		if (isActive == 0)
+	private List<ConfigSpecificEvent> createConfigEvents(DBugEventTemplate<A> event, boolean transactional) {
+		// Nothing to do (and no need to lock) if no active config is interested in the event
+		if (theSubscribers[event.getType().getEventIndex()].length == 0)
 			return Collections.emptyList();
-		List<ConfigSpecificEvent> configEvents = null;
-		for (int i = 0; i < theConfigs.size(); i++) {
-			List<DBugEventConfigInstance> evtConfigs = theConfigs.get(i).events.get(event.getType().getEventIndex());
-			for (DBugEventConfigInstance evtConfig : evtConfigs) {
-				ConfigSpecificEvent cse = new ConfigSpecificEvent(event, evtConfig);
-				if (cse.active) {
-					if (configEvents == null)
-						configEvents = new ArrayList<>(theConfigs.size());
-					configEvents.add(cse);
+		synchronized (this) {
+			DBugEventConfigInstance[] subscribers = theSubscribers[event.getType().getEventIndex()];
+			if (subscribers.length == 0)
+				return Collections.emptyList();
+			theDBug.getMetrics().eventCreated();
+			List<ConfigSpecificEvent> configEvents = null;
+			DBugEventTemplate<A> snapshot = null;
+			// Sub-expressions shared between a config's event variables and conditions are only evaluated once for the event
+			try (Transaction t = SharedExpression.scope(theValue)) {
+				for (DBugEventConfigInstance evtConfig : subscribers) {
+					if (!evtConfig.isEnabled()) {
+						evtConfig.config.metrics.filtered();
+						continue;
+					}
+					boolean timed = evtConfig.config.metrics.shouldTime();
+					long evalStart = timed ? System.nanoTime() : 0;
+					// Nothing is allocated for the config, nor are its values copied, until the event passes its condition
+					ConfigSpecificEvent conditionEvent = evtConfig.test(event);
+					ConfigSpecificEvent cse = null;
+					if (conditionEvent != null) {
+						// Only instantaneous events may be reported late, since reporters time transactional ones as they happen
+						boolean deferVariables = !transactional && evtConfig.config.config.getTemplate().isAsyncVariables();
+						DBugEventTemplate<A> cseEvent = event;
+						if (deferVariables) {
+							// Pooled events are re-used, and even a retained event's values are a live view of its builder's,
+							// so deferred variables must be evaluated against a copy
+							if (snapshot == null)
+								snapshot = event.snapshot();
+							cseEvent = snapshot;
+						}
+						cse = new ConfigSpecificEvent(cseEvent, conditionEvent, deferVariables);
+					}
+					evtConfig.config.metrics.evaluated(timed ? System.nanoTime() - evalStart : -1);
+					if (cse == null)
+						evtConfig.config.metrics.filtered();
+					else {
+						if (configEvents == null)
+							configEvents = new ArrayList<>(subscribers.length);
+						configEvents.add(cse);
+					}
 				}
 			}
+			return configEvents == null ? Collections.emptyList() : configEvents;
 		}
-		return configEvents;
 	}
 
 	public synchronized void addConfig(DBugConfig<A> config, long eventId) {
 		for (DBugConfigInstance cfg : theConfigs)
 			if (cfg.config == config)
 				return;
-		DBugConfigInstance configInst = new DBugConfigInstance(config);
+		DBugConfigInstance configInst;
+		try (Transaction t = SharedExpression.scope(theValue)) {
+			configInst = new DBugConfigInstance(config);
+		}
 		boolean active;
 		try {
 			active = configInst.condition.get();
@@ -279,9 +722,13 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 			theConfigs.add(configInst);
 			if (active) {
 				isActive++;
-				fireActive(configInst, true, null, null, eventId, theDynamicValues.copy());
+				try (CompiledEvents compiledEvents = CompiledEvents.open()) {
+					fireActive(configInst, true, null, null, eventId, getDynamicValues().copy(), compiledEvents);
+				}
 			}
 		}
+		updateWatchedFields();
+		updateSubscribers();
 	}
 
 	public synchronized void removeConfig(DBugConfig<A> config) {
@@ -294,6 +741,8 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 				break;
 			}
 		}
+		updateWatchedFields();
+		updateSubscribers();
 	}
 
 	public synchronized void updateConfig(DBugConfig<A> oldConfig, DBugConfig<A> newConfig) {
@@ -310,6 +759,8 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 				break;
 			}
 		}
+		updateWatchedFields();
+		updateSubscribers();
 	}
 
 	@Override
@@ -338,6 +789,42 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 		}
 	}
 
+	private class DefaultAnchorUpdate implements DBugAnchorUpdate<A> {
+		private final BitSet theChanged;
+		private final Object[] theNewValues;
+
+		DefaultAnchorUpdate() {
+			theChanged = new BitSet();
+			theNewValues = new Object[theDynamicValues.keySet().size()];
+		}
+
+		@Override
+		public <P> DBugAnchorUpdate<A> set(String property, P value) {
+			int index = theDynamicValues.keyIndex(property);
+			theChanged.set(index);
+			theNewValues[index] = value;
+			return this;
+		}
+
+		@Override
+		public DBugAnchor<A> commit() {
+			if (theChanged.isEmpty())
+				return DefaultDBugAnchor.this;
+			synchronized (DefaultDBugAnchor.this) {
+				boolean coalesce = theDBug.isCoalescingUpdates();
+				Object[] oldValues = new Object[theNewValues.length];
+				for (int i = theChanged.nextSetBit(0); i >= 0; i = theChanged.nextSetBit(i + 1)) {
+					oldValues[i] = putDynamicValue(i, theNewValues[i]);
+					if (coalesce)
+						deferUpdate(i, oldValues[i]);
+				}
+				if (!coalesce)
+					updateDynamicValues(theChanged, oldValues);
+			}
+			return DefaultDBugAnchor.this;
+		}
+	}
+
 	abstract class AbstractConfiguredRepresenation implements DBugConfiguredAnchor<A> {
 		@Override
 		public DefaultDBugAnchorType<A> getType() {
@@ -364,15 +851,70 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 			throw new IllegalStateException("Dynamic values may not be modified through a configured view");
 		}
 
+		@Override
+		public <P> P setDynamicValue(int fieldIndex, P value) {
+			throw new IllegalStateException("Dynamic values may not be modified through a configured view");
+		}
+
 		@Override
 		public <P> DBugAnchor<A> modifyDynamicValue(String property, Function<? super P, ? extends P> map) {
 			throw new IllegalStateException("Dynamic values may not be modified through a configured view");
 		}
 
+		@Override
+		public DBugAnchorUpdate<A> updates() {
+			throw new IllegalStateException("Dynamic values may not be modified through a configured view");
+		}
+
+		@Override
+		public long add(String property, long delta) {
+			throw new IllegalStateException("Dynamic values may not be modified through a configured view");
+		}
+
+		@Override
+		public long accumulate(String property, long value, LongBinaryOperator op) {
+			throw new IllegalStateException("Dynamic values may not be modified through a configured view");
+		}
+
 		@Override
 		public DBugEventBuilder event(String eventName) {
 			throw new IllegalStateException("Events may not be fired through a configured view");
 		}
+
+		@Override
+		public DBugEventBuilder event(DBugEventHandle<A> event) {
+			throw new IllegalStateException("Events may not be fired through a configured view");
+		}
+
+		@Override
+		public void fire(DBugEventHandle<A> event) {
+			throw new IllegalStateException("Events may not be fired through a configured view");
+		}
+
+		@Override
+		public void fire(DBugEventHandle<A> event, Object value0) {
+			throw new IllegalStateException("Events may not be fired through a configured view");
+		}
+
+		@Override
+		public void fire(DBugEventHandle<A> event, Object value0, Object value1) {
+			throw new IllegalStateException("Events may not be fired through a configured view");
+		}
+
+		@Override
+		public void fire(DBugEventHandle<A> event, Object value0, Object value1, Object value2) {
+			throw new IllegalStateException("Events may not be fired through a configured view");
+		}
+
+		@Override
+		public void fire(DBugEventHandle<A> event, Object... values) {
+			throw new IllegalStateException("Events may not be fired through a configured view");
+		}
+
+		@Override
+		public boolean isSubscribed(DBugEventHandle<A> event) {
+			return DefaultDBugAnchor.this.isSubscribed(event);
+		}
 	}
 
 	private class DBugConfigInstance extends AbstractConfiguredRepresenation {
@@ -381,9 +923,15 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 		final QuickMap<String, List<DBugEventConfigInstance>> events;
 		final AnchorEvaluatedExpression<Boolean> condition;
 		final Object[] theReporterCompiledConfiguredAnchors;
+		final DBugMetrics.ConfigMetrics metrics;
+		final long evalBudget;
+		final boolean sampleConditions;
 
 		DBugConfigInstance(DBugConfig<A> config) {
 			this.config = config;
+			metrics = theDBug.getMetrics().forConfig(config.getTemplate().getID());
+			evalBudget = config.getTemplate().getEvalBudget();
+			sampleConditions = config.getTemplate().isSampleConditions();
 			variables = config.getValues().keySet().createMap();
 			for (int i = 0; i < variables.keySet().size(); i++)
 				if (config.getValues().get(i) != null) {
@@ -432,6 +980,21 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 				isActive--;
 		}
 
+		boolean isConditionTrue() {
+			return !condition.error && Boolean.TRUE.equals(condition.get());
+		}
+
+		void expressionError(ExpressionErrors errors, String message, Throwable e) {
+			metrics.expressionError();
+			errors.error(message, e);
+		}
+
+		void timed(ExpressionCost cost, long nanos, boolean condition) {
+			// Conditions are never demoted unless the config opts in
+			if ((!condition || sampleConditions) && cost.timed(nanos, evalBudget))
+				metrics.expressionDemoted();
+		}
+
 		DBugConfigInstance replaceWith(DBugConfig<A> config) {
 			// TODO
 		}
@@ -472,17 +1035,11 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 			try {
 				evald = expressionConfig.expression.given(configuredAnchor, false,
 					expressionConfig.template == null || expressionConfig.template.cacheable);
-			} catch (DBugParseException e) {
-				error = true;
-				// TODO At some point it would be better if we could report the error to the configs
-				evald = null;
-				e.printStackTrace();
-			} catch (RuntimeException e) {
+			} catch (DBugParseException | RuntimeException e) {
 				error = true;
 				evald = null;
-				System.err.println("Could not evaluate " + (expressionConfig == null ? "condition" : expressionConfig.toString())
-					+ " for config on " + theType);
-				e.printStackTrace(); // Assume this is from the implementation
+				configuredAnchor.expressionError(expressionConfig.errors,
+					"Could not evaluate " + expressionConfig + " for config on " + theType, e);
 			}
 			staticallyEvaluated = evald;
 		}
@@ -494,16 +1051,27 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 				if (staticallyEvaluated == null)
 					return null;
 			}
+			if (expressionConfig.errors.isDisabled()) {
+				error = true;
+				return null;
+			}
+			boolean timed = expressionConfig.cost.shouldTime();
+			long start = timed ? System.nanoTime() : 0;
 			try {
 				error = false;
 				return ((ConstantExpression<A, ? extends X>) staticallyEvaluated.given(configuredAnchor, true, true)).value;
 			} catch (DBugParseException | RuntimeException e) {
 				error = true;
-				// TODO At some point it would be better if we could report the error to the configs
-				System.err.println("Could not evaluate " + (expressionConfig == null ? "condition" : expressionConfig.toString())
-					+ " for config on " + theType);
-				e.printStackTrace();
+				configuredAnchor.expressionError(expressionConfig.errors,
+					"Could not evaluate " + expressionConfig + " for config on " + theType, e);
 				return null;
+			} finally {
+				if (timed) {
+					long nanos = System.nanoTime() - start;
+					configuredAnchor.metrics.evaluated(nanos);
+					configuredAnchor.timed(expressionConfig.cost, nanos, expressionConfig.template == null);
+				} else
+					configuredAnchor.metrics.evaluated(-1);
 			}
 		}
 
@@ -514,6 +1082,7 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 
 	private class CachedAnchorEvaluatedExpression<X> extends AnchorEvaluatedExpression<X> {
 		X dynamicallyEvaluated;
+		boolean evaluated;
 
 		CachedAnchorEvaluatedExpression(DBugConfigInstance configAnchor, DBugConfigValue<A, X> config) {
 			super(configAnchor, config);
@@ -521,7 +1090,11 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 
 		@Override
 		void reevaluate() {
-			dynamicallyEvaluated = evaluate();
+			// A demoted expression keeps its last value between samples
+			if (!evaluated || expressionConfig.cost.shouldEvaluate()) {
+				evaluated = true;
+				dynamicallyEvaluated = evaluate();
+			}
 		}
 
 		@Override
@@ -539,9 +1112,18 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 			super(configAnchor, config);
 		}
 
+		/** The value from the last time this expression was evaluated, reported while the expression is demoted and not sampled */
+		private X lastValue;
+		private boolean evaluated;
+
 		@Override
 		X get() {
-			return evaluate();
+			if (evaluated && !expressionConfig.cost.shouldEvaluate())
+				return lastValue;
+			X value = evaluate();
+			lastValue = value;
+			evaluated = true;
+			return value;
 		}
 
 		@Override
@@ -554,6 +1136,8 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 		final QuickMap<String, EventEvaluableExpression<?>> eventVariables;
 		final EventEvaluableExpression<?> condition;
 		final Object[] theEventReporterCompiledConfiguredAnchors;
+		/** Re-used to evaluate the condition for each event, so that nothing is allocated for events that don't pass it */
+		private ConfigSpecificEvent theConditionEvent;
 
 		public DBugEventConfigInstance(DBugConfigInstance config, DBugEventConfig<A> eventConfig) {
 			this.config = config;
@@ -568,6 +1152,38 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 				- config.getConfig().getReporters().size()];
 		}
 
+		/**
+		 * @return False if this event's condition has failed too often and is disabled, or is too expensive to evaluate for every event and
+		 *         the current event is not sampled. Checked before anything is allocated for an event.
+		 */
+		boolean isEnabled() {
+			return condition == null || (!condition.error && !condition.config.errors.isDisabled()
+				&& (!config.sampleConditions || condition.config.cost.shouldEvaluate()));
+		}
+
+		/**
+		 * Evaluates this event config's condition for an event. Must be called holding the anchor's lock.
+		 *
+		 * @param event The event to test
+		 * @return The instance holding the event variables evaluated for the condition if the event passes it, or null if it doesn't
+		 */
+		ConfigSpecificEvent test(DBugEventTemplate<A> event) {
+			ConfigSpecificEvent conditionEvent = theConditionEvent;
+			if (conditionEvent == null || conditionEvent.theEvent != null) // The latter if the condition fired an event re-entrantly
+				conditionEvent = new ConfigSpecificEvent(this);
+			theConditionEvent = conditionEvent;
+			return conditionEvent.test(event) ? conditionEvent : null;
+		}
+
+		/**
+		 * @param event The event
+		 * @return The event for this config, or null if the event doesn't pass the condition
+		 */
+		ConfigSpecificEvent createEvent(DBugEventTemplate<A> event) {
+			ConfigSpecificEvent conditionEvent = test(event);
+			return conditionEvent == null ? null : new ConfigSpecificEvent(event, conditionEvent, false);
+		}
+
 		Object getReporterCompiledConfiguredAnchor(int index) {
 			int evtRIndex = index - config.getConfig().getReporters().size();
 			Object compiledConfiguredAnchor;
@@ -600,9 +1216,8 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 			try {
 				evald = config.expression.given(eventConfig.config, false, false);
 			} catch (DBugParseException e) {
-				// TODO At some point it would be better if we could report the error to the configs
 				evald = null;
-				e.printStackTrace();
+				eventConfig.config.expressionError(config.errors, "Could not evaluate event " + config + " for config on " + theType, e);
 				error = true;
 			}
 			staticallyEvaluated = evald;
@@ -610,75 +1225,151 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 	}
 
 	private class ConfigSpecificEvent implements DBugConfigEvent<A> {
-		private final DBugEventTemplate<A> theEvent;
+		/** Only null for a {@link DBugEventConfigInstance#test(DBugEventTemplate) condition tester} not in use */
+		private DBugEventTemplate<A> theEvent;
 		private final DBugEventConfigInstance theConfig;
-		private final EventConfiguredRepresentation theEventAnchor;
+		/** Created when first needed. Never created for a condition tester, which uses {@link #theConditionAnchor} instead. */
+		private EventConfiguredRepresentation theEventAnchor;
+		/** Only non-null for a condition tester */
+		private final ConditionRepresentation theConditionAnchor;
+		private final QuickMap<String, Object> theConfigValues;
 		private final QuickMap<String, Object> theEventConfigValues;
-		final boolean active;
+		/** True if event variables not needed by the condition are to be evaluated on the reporting thread (see {@link #occurLater()}) */
+		final boolean hasDeferredVariables;
 		private List<Transaction> theReporterTransactions;
 
-		ConfigSpecificEvent(DBugEventTemplate<A> event, DBugEventConfigInstance config) {
-			theEvent = event;
+		/** Creates a re-usable instance to {@link #test(DBugEventTemplate) test} events against the config's condition */
+		ConfigSpecificEvent(DBugEventConfigInstance config) {
 			theConfig = config;
-			theEventAnchor = new EventConfiguredRepresentation(config.config);
-			QuickMap<String, Object> configValues = config.eventConfig.eventValues.keySet().createMap();
-			theEventConfigValues = configValues.unmodifiable();
-			// Evaluate event variables that the condition depends on
-			if (config.condition != null) {
-				boolean error = config.condition.error;
-				if (config.condition.config.eventVariableDependencies != null) {
-					for (int i = config.condition.config.eventVariableDependencies.nextSetBit(0); !error
-						&& i >= 0; i = config.condition.config.eventVariableDependencies.nextSetBit(i + 1)) {
-						Expression<A, ?> configVar = config.eventVariables.get(i).staticallyEvaluated;
-						if (configVar == null) {
-							error = true;
-							continue;
-						}
-						try {
-							configValues.put(i, configVar.evaluate(this));
-						} catch (DBugParseException e) {
-							error = true;
-							// TODO At some point it would be better if we could report the error to the configs
-							System.err.println("Could not evaluate event variable " + theType + "." + theEvent.getType().getEventName()
-								+ "." + theEvent.getType().getEventFields().keySet().get(i));
-							e.printStackTrace();
-						}
-					}
+			theConfigValues = config.eventConfig.eventValues.keySet().createMap();
+			theEventConfigValues = theConfigValues.unmodifiable();
+			hasDeferredVariables = false;
+			theConditionAnchor = new ConditionRepresentation(config.config, this);
+		}
+
+		/**
+		 * Creates the event for a config after it has passed the condition
+		 *
+		 * @param event The event
+		 * @param conditionEvent The condition tester that the event passed, holding the event variables the condition depends on
+		 * @param deferVariables Whether the remaining event variables are to be evaluated on the reporting thread
+		 */
+		ConfigSpecificEvent(DBugEventTemplate<A> event, ConfigSpecificEvent conditionEvent, boolean deferVariables) {
+			theEvent = event;
+			theConfig = conditionEvent.theConfig;
+			theConfigValues = theConfig.eventConfig.eventValues.keySet().createMap();
+			theEventConfigValues = theConfigValues.unmodifiable();
+			theConditionAnchor = null;
+			BitSet conditionDependencies = theConfig.condition == null ? null : theConfig.condition.config.eventVariableDependencies;
+			if (conditionDependencies != null) {
+				for (int i = conditionDependencies.nextSetBit(0); i >= 0; i = conditionDependencies.nextSetBit(i + 1)) {
+					theConfigValues.put(i, conditionEvent.theConfigValues.get(i));
+					conditionEvent.theConfigValues.put(i, null);
+				}
+			}
+			hasDeferredVariables = deferVariables;
+			getAnchor(); // Capture the anchor's config values as of the event, since reporters may look at them later
+			if (!deferVariables)
+				evaluateVariables();
+		}
+
+		/**
+		 * Evaluates the condition, and the event variables it depends on, for an event using this re-usable instance
+		 *
+		 * @param event The event to test
+		 * @return Whether the event passes the condition
+		 */
+		boolean test(DBugEventTemplate<A> event) {
+			DBugEventConfigInstance config = theConfig;
+			if (config.condition == null)
+				return true; // If no condition, then the event is always active
+			BitSet dependencies = config.condition.config.eventVariableDependencies;
+			theEvent = event;
+			boolean passed = false;
+			try {
+				passed = _test(dependencies);
+				return passed;
+			} finally {
+				// Don't hold onto the event or its values until the next event
+				theEvent = null;
+				if (!passed && dependencies != null) {
+					for (int i = dependencies.nextSetBit(0); i >= 0; i = dependencies.nextSetBit(i + 1))
+						theConfigValues.put(i, null);
 				}
-				if (error)
-					active = false;
-				else {
-					boolean conditionActive;
+			}
+		}
+
+		private boolean _test(BitSet dependencies) {
+			DBugEventConfigInstance config = theConfig;
+			for (int i = dependencies == null ? -1 : dependencies.nextSetBit(0); i >= 0; i = dependencies.nextSetBit(i + 1)) {
+				EventEvaluableExpression<?> var = config.eventVariables.get(i);
+				if (var.staticallyEvaluated == null || var.config.errors.isDisabled())
+					return false;
+				try {
+					theConfigValues.put(i, evaluate(var));
+				} catch (DBugParseException | RuntimeException e) {
+					config.config.expressionError(var.config.errors, "Could not evaluate event variable " + theType + "."
+						+ theEvent.getType().getEventName() + "." + theConfigValues.keySet().get(i), e);
+					return false;
+				}
+			}
+			try {
+				return Boolean.TRUE.equals(evaluate(config.condition));
+			} catch (DBugParseException | RuntimeException e) {
+				config.config.expressionError(config.condition.config.errors,
+					"Could not evaluate condition for event " + theType + "." + theEvent.getType().getEventName(), e);
+				return false;
+			}
+		}
+
+		/** Evaluates the event variables that were not needed to evaluate the condition */
+		private void evaluateVariables() {
+			DBugEventConfigInstance config = theConfig;
+			for (int i = 0; i < theConfigValues.keySet().size(); i++) {
+				if (config.condition != null && config.condition.config.eventVariableDependencies != null
+					&& config.condition.config.eventVariableDependencies.get(i))
+					continue; // Already evaluated
+				EventEvaluableExpression<?> var = config.eventVariables.get(i);
+				if (var.staticallyEvaluated != null && !var.config.errors.isDisabled()) {
+					// A previous event's value would be misleading, so a demoted variable is reported as null between samples
+					if (!var.config.cost.shouldEvaluate()) {
+						theConfigValues.put(i, null);
+						continue;
+					}
 					try {
-						conditionActive = Boolean.TRUE.equals(config.condition.staticallyEvaluated.evaluate(this));
-					} catch (DBugParseException e) {
-						conditionActive = false;
-						error = true;
-						// TODO At some point it would be better if we could report the error to the configs
-						System.err.println("Could not evaluate condition for event " + theType + "." + theEvent.getType().getEventName());
-						e.printStackTrace();
+						theConfigValues.put(i, evaluate(var));
+					} catch (DBugParseException | RuntimeException e) {
+						config.config.expressionError(var.config.errors, "Could not evaluate event variable " + theType + "."
+							+ theEvent.getType().getEventName() + "." + theConfigValues.keySet().get(i), e);
 					}
-					active = conditionActive;
 				}
-			} else
-				active = true; // If no condition, then the event is always active
-			if (active) {
-				for (int i = 0; i < configValues.keySet().size(); i++) {
-					if (config.condition != null && config.condition.config.eventVariableDependencies != null
-						&& config.condition.config.eventVariableDependencies.get(i))
-						continue; // Already evaluated
-					Expression<A, ?> configVar = config.eventVariables.get(i).staticallyEvaluated;
-					if (configVar != null) {
-						try {
-							configValues.put(i, configVar.evaluate(this));
-						} catch (DBugParseException e) {
-							// TODO At some point it would be better if we could report the error to the configs
-							System.err.println("Could not evaluate event variable " + theType + "." + theEvent.getType().getEventName()
-								+ "." + theEvent.getType().getEventFields().keySet().get(i));
-							e.printStackTrace();
-						}
-					}
+			}
+		}
+
+		/**
+		 * Evaluates the deferred event variables and notifies the reporters on DBug's reporting thread, in the context (e.g. the enclosing
+		 * transactional events) of the code that fired the event
+		 */
+		void occurLater() {
+			theDBug.queueAction(DBugContext.wrap(() -> {
+				try (Transaction t = SharedExpression.scope(theValue); CompiledEvents compiledEvents = CompiledEvents.open()) {
+					evaluateVariables();
+					occurred(compiledEvents);
+				} catch (RuntimeException e) {
+					System.err.println("Exception occurred reporting event " + this);
+					e.printStackTrace();
 				}
+			}));
+		}
+
+		private Object evaluate(EventEvaluableExpression<?> expression) throws DBugParseException {
+			if (!expression.config.cost.shouldTime())
+				return expression.staticallyEvaluated.evaluate(this);
+			long start = System.nanoTime();
+			try {
+				return expression.staticallyEvaluated.evaluate(this);
+			} finally {
+				theConfig.config.timed(expression.config.cost, System.nanoTime() - start, expression.config.varName == null);
 			}
 		}
 
@@ -702,8 +1393,22 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 			return theEvent.getEventId();
 		}
 
+		@Override
+		public long getParentEventId() {
+			return theEvent.getParentEventId();
+		}
+
+		@Override
+		public long getTraceId() {
+			return theEvent.getTraceId();
+		}
+
 		@Override
 		public DBugConfiguredAnchor<A> getAnchor() {
+			if (theConditionAnchor != null)
+				return theConditionAnchor;
+			else if (theEventAnchor == null)
+				theEventAnchor = new EventConfiguredRepresentation(theConfig.config, theEvent.getDynamicValues());
 			return theEventAnchor;
 		}
 
@@ -737,25 +1442,35 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 			return theEvent.getEnd();
 		}
 
-		void occurred(Map<DBugEventReporter<?, ?, ?, ?, ?>, Object> compiledEvents) {
+		void occurred(CompiledEvents compiledEvents) {
 			int rc = theConfig.eventConfig.template.getReporterCount();
 			for (int i = 0; i < rc; i++) {
 				DBugEventReporter<Object, Object, Object, Object, Object> reporter;
 				reporter = (DBugEventReporter<Object, Object, Object, Object, Object>) theConfig.eventConfig.template.getReporter(i);
 				Object compiledAnchor = theConfig.getReporterCompiledConfiguredAnchor(i);
 				Object compiledEventType = theConfig.eventConfig.getReporterCompiledEvent(i);
-				Object compiledEvent = compiledEvents.computeIfAbsent(reporter,
-					r -> reporter.compileForEvent(compiledAnchor, compiledEventType, theEvent));
+				int reporterId = theConfig.eventConfig.getReporterId(i);
+				Object compiledEvent = compiledEvents.get(reporterId);
+				if (compiledEvent == null) {
+					compiledEvent = reporter.compileForEvent(compiledAnchor, compiledEventType, theEvent);
+					compiledEvents.set(reporterId, compiledEvent);
+				}
+				DBugMetrics.ReporterMetrics metrics = theType.getReporterMetrics(reporterId);
+				boolean timed = metrics.shouldTime();
+				long start = timed ? System.nanoTime() : 0;
 				try {
 					reporter.eventOccurred(this, compiledAnchor, compiledEvent);
+					metrics.called(timed ? System.nanoTime() - start : -1, false);
 				} catch (RuntimeException e) {
+					metrics.called(timed ? System.nanoTime() - start : -1, true);
 					System.err.println("Exception occurred notifying reporter " + reporter + " of event " + this);
 					e.printStackTrace();
 				}
 			}
+			theConfig.config.metrics.delivered();
 		}
 
-		void begun(Map<DBugEventReporter<?, ?, ?, ?, ?>, Object> compiledEvents) {
+		void begun(CompiledEvents compiledEvents) {
 			int rc = theConfig.eventConfig.template.getReporterCount();
 			theReporterTransactions = new ArrayList<>(rc);
 			for (int i = 0; i < rc; i++) {
@@ -763,16 +1478,26 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 				reporter = (DBugEventReporter<Object, Object, Object, Object, Object>) theConfig.eventConfig.template.getReporter(i);
 				Object compiledAnchor = theConfig.getReporterCompiledConfiguredAnchor(i);
 				Object compiledEventType = theConfig.eventConfig.getReporterCompiledEvent(i);
-				Object compiledEvent = compiledEvents.computeIfAbsent(reporter,
-					r -> reporter.compileForEvent(compiledAnchor, compiledEventType, theEvent));
+				int reporterId = theConfig.eventConfig.getReporterId(i);
+				Object compiledEvent = compiledEvents.get(reporterId);
+				if (compiledEvent == null) {
+					compiledEvent = reporter.compileForEvent(compiledAnchor, compiledEventType, theEvent);
+					compiledEvents.set(reporterId, compiledEvent);
+				}
+				DBugMetrics.ReporterMetrics metrics = theType.getReporterMetrics(reporterId);
+				boolean timed = metrics.shouldTime();
+				long start = timed ? System.nanoTime() : 0;
 				try {
 					theReporterTransactions.add(//
 						reporter.eventBegun(this, compiledAnchor, compiledEvent));
+					metrics.called(timed ? System.nanoTime() - start : -1, false);
 				} catch (RuntimeException e) {
+					metrics.called(timed ? System.nanoTime() - start : -1, true);
 					System.err.println("Exception occurred notifying reporter " + reporter + " of event " + this);
 					e.printStackTrace();
 				}
 			}
+			theConfig.config.metrics.delivered();
 		}
 
 		void ended() {
@@ -788,13 +1513,52 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 		}
 	}
 
+	/**
+	 * The anchor as seen by an event config's condition. One is re-used for every event tested against the condition, and its config
+	 * values are read live rather than copied, which is consistent because conditions are tested holding the anchor's lock.
+	 */
+	class ConditionRepresentation extends AbstractConfiguredRepresenation {
+		private final DBugConfigInstance theConfig;
+		private final QuickMap<String, Object> theAnchorConfigValues;
+		private final ConfigSpecificEvent theTester;
+
+		ConditionRepresentation(DBugConfigInstance config, ConfigSpecificEvent tester) {
+			theConfig = config;
+			theAnchorConfigValues = config.getConfigValues();
+			theTester = tester;
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public DBugConfig<A> getConfig() {
+			return theConfig.config;
+		}
+
+		@Override
+		public QuickMap<String, Object> getConfigValues() {
+			return theAnchorConfigValues;
+		}
+
+		@Override
+		public QuickMap<String, Object> getDynamicValues() {
+			return theTester.getDynamicValues();
+		}
+	}
+
 	class EventConfiguredRepresentation extends AbstractConfiguredRepresenation {
 		private final DBugConfig<A> theConfig;
 		private final QuickMap<String, Object> theAnchorConfigValues;
+		/** The dynamic values captured with the event, which may be evaluated after the anchor's values have changed */
+		private final QuickMap<String, Object> theDynamicValues;
 
-		EventConfiguredRepresentation(DBugConfigInstance config) {
+		EventConfiguredRepresentation(DBugConfigInstance config, QuickMap<String, Object> dynamicValues) {
 			theConfig = config.config;
 			theAnchorConfigValues = config.getConfigValues().copy();
+			theDynamicValues = dynamicValues;
 		}
 
 		@Override
@@ -811,5 +1575,50 @@ public class DefaultDBugAnchor<A> implements DBugAnchor<A> {
 		public QuickMap<String, Object> getConfigValues() {
 			return theAnchorConfigValues;
 		}
+
+		@Override
+		public QuickMap<String, Object> getDynamicValues() {
+			return theDynamicValues;
+		}
+	}
+
+	/**
+	 * Each reporter's compiled form of an event being reported, by reporter ID, so that a reporter compiles the event only once no matter
+	 * how many configs it is reporting it for. Each thread re-uses one instance, so nothing is allocated per event.
+	 */
+	private static class CompiledEvents implements Transaction {
+		private static final ThreadLocal<CompiledEvents> CURRENT = ThreadLocal.withInitial(CompiledEvents::new);
+
+		private Object[] theEvents = new Object[0];
+		private int theSize;
+		private boolean isInUse;
+
+		/** @return The current thread's instance, or a new one if it is in use, e.g. by a reporter that fired an event */
+		static CompiledEvents open() {
+			CompiledEvents events = CURRENT.get();
+			if (events.isInUse)
+				return new CompiledEvents();
+			events.isInUse = true;
+			return events;
+		}
+
+		Object get(int reporterId) {
+			return reporterId < theSize ? theEvents[reporterId] : null;
+		}
+
+		void set(int reporterId, Object compiledEvent) {
+			if (reporterId >= theEvents.length)
+				theEvents = Arrays.copyOf(theEvents, Math.max(reporterId + 1, theEvents.length * 2));
+			theEvents[reporterId] = compiledEvent;
+			if (reporterId >= theSize)
+				theSize = reporterId + 1;
+		}
+
+		@Override
+		public void close() {
+			Arrays.fill(theEvents, 0, theSize, null);
+			theSize = 0;
+			isInUse = false;
+		}
 	}
 }
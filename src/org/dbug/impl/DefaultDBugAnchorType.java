@@ -1,17 +1,21 @@
 package org.dbug.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
 
 import org.dbug.DBugAnchor;
+import org.dbug.DBugAnchorUpdate;
 import org.dbug.DBugAnchorBuilder;
 import org.dbug.DBugAnchorType;
 import org.dbug.DBugEventBuilder;
+import org.dbug.DBugEventHandle;
 import org.dbug.DBugEventType;
 import org.dbug.DBugFieldType;
 import org.dbug.DBugParameterType;
@@ -20,9 +24,11 @@ import org.dbug.config.DBugConfig.DBugConfigValue;
 import org.dbug.config.DBugConfig.DBugEventValue;
 import org.dbug.config.DBugConfigTemplate;
 import org.dbug.config.DBugConfigTemplate.DBugEventConfigTemplate;
+import org.dbug.config.DBugEventReporter;
 import org.dbug.expression.DBugParseEnv;
 import org.dbug.expression.DBugParseException;
 import org.dbug.expression.Expression;
+import org.dbug.expression.ExpressionOptimizer;
 import org.dbug.expression.ExpressionParser;
 import org.observe.util.TypeTokens;
 import org.qommons.BiTuple;
@@ -36,13 +42,21 @@ public class DefaultDBugAnchorType<A> implements DBugAnchorType<A> {
 	private final String theSchema;
 	private final Class<A> theType;
 	final Class<?> theBuilderClass;
+	/** The fields and events this type was declared with, in declaration order. See {@link #declaration(Map, Map)}. */
+	final List<Object> theDeclaration;
 	private final QuickMap<String, DBugParameterType<A, ?>> theStaticValues;
 	private final QuickMap<String, DBugParameterType<A, ?>> theDynamicValues;
 	private final QuickMap<String, DefaultDBugEventType<A>> theEventTypes;
 	final int theActiveEventIndex;
 	final int theUpdateEventIndex;
+	final boolean hasExternalFields;
+	private volatile boolean isRetainingEvents;
 
 	private final List<DBugConfig<A>> theConfigs;
+	/** Every reporter that has been configured for this type, indexed by ID */
+	private final List<DBugEventReporter<?, ?, ?, ?, ?>> theReporters;
+	/** The metrics of each reporter in {@link #theReporters}, resolved once when the reporter is first configured for this type */
+	private volatile DBugMetrics.ReporterMetrics[] theReporterMetrics;
 	private InactiveAnchor<A> theInactive;
 
 	public DefaultDBugAnchorType(DefaultDBug debug, String schema, Class<A> type, Class<?> builderClass,
@@ -51,6 +65,7 @@ public class DefaultDBugAnchorType<A> implements DBugAnchorType<A> {
 		theSchema = schema;
 		theType = type;
 		theBuilderClass = builderClass;
+		theDeclaration = declaration(valueTypes, eventTypes);
 		List<String> staticValueNames = new LinkedList<>();
 		List<String> dynamicValueNames = new LinkedList<>();
 		for (Map.Entry<String, DBugParameterType<A, ?>> valueType : valueTypes.entrySet()) {
@@ -80,7 +95,18 @@ public class DefaultDBugAnchorType<A> implements DBugAnchorType<A> {
 		theActiveEventIndex = theEventTypes.keyIndex(DBugEventType.StandardEvents.ANCHOR_ACTIVE.name());
 		theUpdateEventIndex = theEventTypes.keyIndex(DBugEventType.StandardEvents.VALUE_UPDATE.name());
 
+		boolean external = false;
+		for (DBugParameterType<A, ?> valueType : valueTypes.values()) {
+			if (valueType.producer == null) {
+				external = true;
+				break;
+			}
+		}
+		hasExternalFields = external;
+
 		theConfigs = new ArrayList<>();
+		theReporters = new ArrayList<>();
+		theReporterMetrics = new DBugMetrics.ReporterMetrics[0];
 	}
 
 	@Override
@@ -108,15 +134,36 @@ public class DefaultDBugAnchorType<A> implements DBugAnchorType<A> {
 		return (QuickMap<String, DBugEventType<A>>) (QuickMap<String, ? extends DBugEventType<A>>) theEventTypes;
 	}
 
+	@Override
+	public DefaultDBugEventType<A> eventHandle(String eventName) throws IllegalArgumentException {
+		int index = theEventTypes.keySet().indexOf(eventName);
+		if (index < 0)
+			throw new IllegalArgumentException("No such event " + this + "." + eventName);
+		return theEventTypes.get(index);
+	}
+
 	@Override
 	public DBugAnchorBuilder<A> debug(A value) {
 		return theDebug.debug(this, value);
 	}
 
+	@Override
+	public List<DBugAnchor<A>> debugAll(Iterable<? extends A> values) {
+		if (hasExternalFields)
+			throw new IllegalStateException("Anchors of type " + this + " require externally-specified fields and cannot be built in bulk");
+		return theDebug.debugAll(this, values);
+	}
+
 	public List<DBugConfig<A>> getConfigs() {
 		return Collections.unmodifiableList(theConfigs);
 	}
 
+	/** Re-enables any of this type's config expressions that were disabled for failing too often */
+	void resetErrors() {
+		for (DBugConfig<A> cfg : theConfigs)
+			cfg.resetErrors();
+	}
+
 	@Override
 	public int hashCode() {
 		return theSchema.hashCode() * 3 + theType.hashCode() * 3;
@@ -129,7 +176,33 @@ public class DefaultDBugAnchorType<A> implements DBugAnchorType<A> {
 		else if (!(obj instanceof DefaultDBugAnchorType))
 			return false;
 		DefaultDBugAnchorType<?> other = (DefaultDBugAnchorType<?>) obj;
-		return theType.equals(other.theType) && theBuilderClass.equals(other.theBuilderClass);
+		return theType.equals(other.theType) && theBuilderClass.equals(other.theBuilderClass)
+			&& theDeclaration.equals(other.theDeclaration);
+	}
+
+	/**
+	 * Builders are typically lambdas, which may be the same class for different declarations (e.g. when declared from a common
+	 * utility), so anchor types are distinguished by what they declare as well as by their builder class. Field producers can't be
+	 * compared, so only whether a field is external is significant.
+	 * 
+	 * @param valueTypes The declared fields of the anchor type
+	 * @param eventTypes The declared events of the anchor type
+	 * @return A value that is equal for equivalent declarations
+	 */
+	static <A> List<Object> declaration(Map<String, DBugParameterType<A, ?>> valueTypes, Map<String, Map<String, TypeToken<?>>> eventTypes) {
+		List<Object> declaration = new ArrayList<>(valueTypes.size() * 4 + eventTypes.size() * 2);
+		for (Map.Entry<String, DBugParameterType<A, ?>> value : valueTypes.entrySet()) {
+			declaration.add(value.getKey());
+			declaration.add(value.getValue().level);
+			declaration.add(value.getValue().type);
+			declaration.add(value.getValue().producer == null);
+		}
+		for (Map.Entry<String, Map<String, TypeToken<?>>> event : eventTypes.entrySet()) {
+			declaration.add(event.getKey());
+			// Field order matters, since event values may be given positionally
+			declaration.add(new ArrayList<>(event.getValue().entrySet()));
+		}
+		return Collections.unmodifiableList(declaration);
 	}
 
 	@Override
@@ -137,10 +210,66 @@ public class DefaultDBugAnchorType<A> implements DBugAnchorType<A> {
 		return theSchema + ":" + theType.getName();
 	}
 
+	/** @return Whether any reporter configured for this anchor type may keep references to events after they finish */
+	boolean isRetainingEvents() {
+		return isRetainingEvents;
+	}
+
+	/**
+	 * @param reporterId The ID of a reporter configured for this type
+	 * @return The metrics to record the reporter's calls for this type's events in
+	 */
+	DBugMetrics.ReporterMetrics getReporterMetrics(int reporterId) {
+		return theReporterMetrics[reporterId];
+	}
+
+	/** IDs are never re-used, so that they stay valid for anchors still using a removed config */
+	private synchronized int getReporterId(DBugEventReporter<?, ?, ?, ?, ?> reporter) {
+		for (int i = 0; i < theReporters.size(); i++) {
+			if (theReporters.get(i) == reporter)
+				return i;
+		}
+		theReporters.add(reporter);
+		DBugMetrics.ReporterMetrics[] metrics = Arrays.copyOf(theReporterMetrics, theReporters.size());
+		metrics[metrics.length - 1] = theDebug.getMetrics().forReporter(reporter);
+		theReporterMetrics = metrics;
+		return theReporters.size() - 1;
+	}
+
+	private int[] getReporterIds(DBugEventConfigTemplate event) {
+		int[] ids = new int[event.getReporterCount()];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = getReporterId(event.getReporter(i));
+		return ids;
+	}
+
+	private void updateRetention() {
+		boolean retains = false;
+		for (DBugConfig<A> cfg : theConfigs) {
+			for (DBugEventReporter<?, ?, ?, ?, ?> reporter : cfg.getReporters()) {
+				if (reporter.retainsEvents()) {
+					retains = true;
+					break;
+				}
+			}
+			for (int e = 0; !retains && e < cfg.getEvents().keySet().size(); e++) {
+				for (DBugConfig.DBugEventConfig<A> event : cfg.getEvents().get(e)) {
+					for (int r = 0; !retains && r < event.template.getReporterCount(); r++)
+						retains = event.template.getReporter(r).retainsEvents();
+				}
+			}
+			if (retains)
+				break;
+		}
+		isRetainingEvents = retains;
+	}
+
 	public DBugConfig<A> addConfig(DBugConfigTemplate config, Consumer<String> onError) {
 		DBugConfig<A> parsed = parseConfig(config, onError);
-		if (parsed != null)
+		if (parsed != null) {
 			theConfigs.add(parsed);
+			updateRetention();
+		}
 		return parsed;
 	}
 
@@ -149,6 +278,7 @@ public class DefaultDBugAnchorType<A> implements DBugAnchorType<A> {
 			DBugConfig<A> cfg = theConfigs.get(i);
 			if (cfg.getTemplate().equals(config)) {
 				theConfigs.remove(i);
+				updateRetention();
 				return cfg;
 			}
 		}
@@ -171,11 +301,13 @@ public class DefaultDBugAnchorType<A> implements DBugAnchorType<A> {
 		DBugConfig<A> newCfg = parseConfig(newConfig, onError);
 		if (newCfg == null) {
 			theConfigs.remove(found);
+			updateRetention();
 			return new BiTuple<>(oldCfg, null);
 		} else if (oldCfg.equals(newCfg))
 			return null;
 		else {
 			theConfigs.set(found, newCfg);
+			updateRetention();
 			return new BiTuple<>(oldCfg, newCfg);
 		}
 	}
@@ -211,14 +343,74 @@ public class DefaultDBugAnchorType<A> implements DBugAnchorType<A> {
 			onError.accept("Condition for anchor " + theType.getName() + " does not resolve to a boolean: " + condition + " ("
 				+ condition.getResultType() + ")");
 		}
-		if (valid[0])
-			return configHolder[0] = new DBugConfig<>(config, this, variables,
-				new DBugConfigValue<>(null, (Expression<A, Boolean>) condition,
-				env.getDynamicDependencies(), env.getConfigVariableDependencies()), events);
-		else
+		if (valid[0]) {
+			DBugConfigValue<A, Boolean> conditionValue = new DBugConfigValue<>(null, (Expression<A, Boolean>) condition,
+				env.getDynamicDependencies(), env.getConfigVariableDependencies());
+			conditionValue = shareCommonExpressions(variables, conditionValue, events, configHolder);
+			return configHolder[0] = new DBugConfig<>(config, this, variables, conditionValue, events);
+		} else
 			return null;
 	}
 
+	/**
+	 * Replaces sub-expressions that occur more than once in the config's variables and conditions with shared expressions that are
+	 * only evaluated once per event or anchor update
+	 */
+	private DBugConfigValue<A, Boolean> shareCommonExpressions(QuickMap<String, DBugConfig.DBugConfigValue<A, ?>> variables,
+		DBugConfigValue<A, Boolean> condition, QuickMap<String, List<DBugConfig.DBugEventConfig<A>>> events,
+		DBugConfig<A>[] configHolder) {
+		ExpressionOptimizer<A> optimizer = new ExpressionOptimizer<>();
+		optimizer.scan(condition.expression);
+		for (DBugConfigValue<A, ?> variable : variables.allValues()) {
+			if (variable != null)
+				optimizer.scan(variable.expression);
+		}
+		for (List<DBugConfig.DBugEventConfig<A>> eventConfigs : events == null ? Collections.<List<DBugConfig.DBugEventConfig<A>>> emptyList()
+			: events.allValues()) {
+			for (DBugConfig.DBugEventConfig<A> eventConfig : eventConfigs) {
+				for (DBugEventValue<A, ?> eventVar : eventConfig.eventValues.allValues()) {
+					if (eventVar != null)
+						optimizer.scan(eventVar.expression);
+				}
+				if (eventConfig.condition != null)
+					optimizer.scan(eventConfig.condition.expression);
+			}
+		}
+		if (!optimizer.hasCommonExpressions())
+			return condition;
+
+		for (int i = 0; i < variables.keySet().size(); i++) {
+			if (variables.get(i) != null)
+				variables.put(i, share(optimizer, variables.get(i)));
+		}
+		for (int i = 0; events != null && i < events.keySet().size(); i++) {
+			if (events.get(i).isEmpty())
+				continue;
+			List<DBugConfig.DBugEventConfig<A>> eventConfigs = new ArrayList<>(events.get(i).size());
+			for (DBugConfig.DBugEventConfig<A> eventConfig : events.get(i)) {
+				for (int j = 0; j < eventConfig.eventValues.keySet().size(); j++) {
+					if (eventConfig.eventValues.get(j) != null)
+						eventConfig.eventValues.put(j, share(optimizer, eventConfig.eventValues.get(j)));
+				}
+				eventConfigs.add(new DBugConfig.DBugEventConfig<>(eventConfig.template, eventConfig.eventType, eventConfig.eventValues,
+					eventConfig.condition == null ? null : share(optimizer, eventConfig.condition), configHolder,
+					getReporterIds(eventConfig.template)));
+			}
+			events.put(i, Collections.unmodifiableList(eventConfigs));
+		}
+		return share(optimizer, condition);
+	}
+
+	private static <A, T> DBugConfigValue<A, T> share(ExpressionOptimizer<A> optimizer, DBugConfigValue<A, T> value) {
+		return new DBugConfigValue<>(value.template, optimizer.share(value.expression), value.dynamicDependencies,
+			value.configValueDependencies);
+	}
+
+	private static <A, T> DBugEventValue<A, T> share(ExpressionOptimizer<A> optimizer, DBugEventValue<A, T> value) {
+		return new DBugEventValue<>(value.eventType, value.varName, value.varIndex, optimizer.share(value.expression),
+			value.eventVariableDependencies);
+	}
+
 	private QuickMap<String, DBugConfig.DBugConfigValue<A, ?>> parseVariables(DBugConfigTemplate config, Consumer<String> onError) {
 		QuickMap<String, DBugConfigTemplate.DBugConfigTemplateValue> varTemplates = config.getValues();
 		QuickMap<String, DBugConfig.DBugConfigValue<A, ?>> variables = varTemplates.keySet().createMap();
@@ -323,7 +515,7 @@ public class DefaultDBugAnchorType<A> implements DBugAnchorType<A> {
 				events.get(ei).add(new DBugConfig.DBugEventConfig<>(event, eventType, eventVars, condition == null ? null
 					: new DBugEventValue<>(eventType, null, -1, (Expression<A, Boolean>) condition,
 						env.getEventVariableDependencies()),
-					configHolder));
+					configHolder, getReporterIds(event)));
 			}
 		}
 		for (int i = 0; i < events.keySet().size(); i++) {
@@ -358,6 +550,11 @@ public class DefaultDBugAnchorType<A> implements DBugAnchorType<A> {
 			return false;
 		}
 
+		@Override
+		public boolean isSubscribed(DBugEventHandle<A> event) {
+			return false;
+		}
+
 		@Override
 		public QuickMap<String, Object> getStaticValues() {
 			return QuickSet.<String> empty().createMap();
@@ -373,14 +570,64 @@ public class DefaultDBugAnchorType<A> implements DBugAnchorType<A> {
 			return null;
 		}
 
+		@Override
+		public <P> P setDynamicValue(int fieldIndex, P value) {
+			return null;
+		}
+
 		@Override
 		public <P> DBugAnchor<A> modifyDynamicValue(String property, Function<? super P, ? extends P> map) {
 			return null;
 		}
 
+		@Override
+		public DBugAnchorUpdate<A> updates() {
+			return new DBugAnchorUpdate<A>() {
+				@Override
+				public <P> DBugAnchorUpdate<A> set(String property, P value) {
+					return this;
+				}
+
+				@Override
+				public DBugAnchor<A> commit() {
+					return InactiveAnchor.this;
+				}
+			};
+		}
+
+		@Override
+		public long add(String property, long delta) {
+			return 0;
+		}
+
+		@Override
+		public long accumulate(String property, long value, LongBinaryOperator op) {
+			return 0;
+		}
+
 		@Override
 		public DBugEventBuilder event(String eventName) {
 			return DoNothingEventBuilder.INSTANCE;
 		}
+
+		@Override
+		public DBugEventBuilder event(DBugEventHandle<A> event) {
+			return DoNothingEventBuilder.INSTANCE;
+		}
+
+		@Override
+		public void fire(DBugEventHandle<A> event) {}
+
+		@Override
+		public void fire(DBugEventHandle<A> event, Object value0) {}
+
+		@Override
+		public void fire(DBugEventHandle<A> event, Object value0, Object value1) {}
+
+		@Override
+		public void fire(DBugEventHandle<A> event, Object value0, Object value1, Object value2) {}
+
+		@Override
+		public void fire(DBugEventHandle<A> event, Object... values) {}
 	}
 }
@@ -1,5 +1,6 @@
 package org.dbug.impl;
 
+import java.util.ArrayDeque;
 import java.util.BitSet;
 import java.util.function.Supplier;
 
@@ -9,17 +10,72 @@ import org.qommons.collect.QuickSet.QuickMap;
 
 public class DefaultDBugEventBuilder<T> implements DBugEventBuilder {
 	private final DefaultDBug theDBug;
-	private final DefaultDBugAnchor<T> theAnchor;
+	private DefaultDBugAnchor<T> theAnchor;
 	private final DefaultDBugEventType<T> theType;
 	private final QuickMap<String, Object> theEventProperties;
 	private final BitSet theSpecifiedParameters;
 
+	// Pooling fields, only used when no reporter for the anchor type retains events
+	private final ArrayDeque<DefaultDBugEventBuilder<T>> thePool;
+	private final Thread theOwner;
+	private final QuickMap<String, Object> thePooledDynamicValues;
+	private final QuickMap<String, Object> thePooledDynamicValuesView;
+	private final QuickMap<String, Object> theEventPropertiesView;
+	private final DBugEventTemplate<T> thePooledEvent;
+	private final Transaction thePooledTransaction;
+	private Transaction theEventTransaction;
+
 	public DefaultDBugEventBuilder(DefaultDBug dBug, DefaultDBugAnchor<T> anchor, DefaultDBugEventType<T> type) {
 		theDBug = dBug;
 		theAnchor = anchor;
 		theType = type;
 		theEventProperties = type.getEventFields().keySet().createMap();
 		theSpecifiedParameters = new BitSet();
+
+		thePool = null;
+		theOwner = null;
+		thePooledDynamicValues = null;
+		thePooledDynamicValuesView = null;
+		theEventPropertiesView = null;
+		thePooledEvent = null;
+		thePooledTransaction = null;
+	}
+
+	/**
+	 * Creates a re-usable builder
+	 * 
+	 * @param dBug The DBug instance
+	 * @param type The event type to build events for
+	 * @param pool The current thread's pool to return this builder to when its event is finished
+	 */
+	DefaultDBugEventBuilder(DefaultDBug dBug, DefaultDBugEventType<T> type, ArrayDeque<DefaultDBugEventBuilder<T>> pool) {
+		theDBug = dBug;
+		theType = type;
+		theEventProperties = type.getEventFields().keySet().createMap();
+		theSpecifiedParameters = new BitSet();
+
+		thePool = pool;
+		theOwner = Thread.currentThread();
+		thePooledDynamicValues = type.getAnchorType().getDynamicFields().keySet().createMap();
+		thePooledDynamicValuesView = thePooledDynamicValues.unmodifiable();
+		theEventPropertiesView = theEventProperties.unmodifiable();
+		thePooledEvent = new DBugEventTemplate<>();
+		thePooledTransaction = () -> {
+			Transaction t = theEventTransaction;
+			if (t == null)
+				return; // Already closed. Releasing again would put this builder in the pool twice.
+			theEventTransaction = null;
+			try {
+				t.close();
+			} finally {
+				release();
+			}
+		};
+	}
+
+	DefaultDBugEventBuilder<T> reset(DefaultDBugAnchor<T> anchor) {
+		theAnchor = anchor;
+		return this;
 	}
 
 	@Override
@@ -30,6 +86,14 @@ public class DefaultDBugEventBuilder<T> implements DBugEventBuilder {
 		return this;
 	}
 
+	@Override
+	public DBugEventBuilder with(int fieldIndex, Object value) {
+		int index = theType.getFieldQuickIndex(fieldIndex);
+		theSpecifiedParameters.set(index);
+		theEventProperties.put(index, value);
+		return this;
+	}
+
 	@Override
 	public DBugEventBuilder with(String property, Supplier<?> value) {
 		if (value == null)
@@ -46,19 +110,53 @@ public class DefaultDBugEventBuilder<T> implements DBugEventBuilder {
 			throw new IllegalStateException("Event parameter " + theEventProperties.keySet().get(unspecified) + " has not been specified");
 	}
 
+	private DBugEventTemplate<T> createEvent(boolean transactional) {
+		if (thePool == null)
+			return new DBugEventTemplate<>(theDBug.getProcess(), theDBug.getNextEventId(), theAnchor, theType,
+				theAnchor.getDynamicValues().copy().unmodifiable(), theEventProperties.unmodifiable(), transactional);
+		theAnchor.copyDynamicValues(thePooledDynamicValues);
+		return thePooledEvent.init(theDBug.getProcess(), theDBug.getNextEventId(), theAnchor, theType, thePooledDynamicValuesView,
+			theEventPropertiesView, transactional);
+	}
+
 	@Override
 	public Transaction begin() {
 		assertComplete();
-		return theAnchor.beginEvent(//
-			new DBugEventTemplate<>(theDBug.getProcess(), theDBug.getNextEventId(), theAnchor, theType,
-				theAnchor.getDynamicValues().copy().unmodifiable(), theEventProperties.unmodifiable(), true));
+		if (thePool == null)
+			return theAnchor.beginEvent(createEvent(true));
+		try {
+			theEventTransaction = theAnchor.beginEvent(createEvent(true));
+		} catch (RuntimeException | Error e) {
+			release();
+			throw e;
+		}
+		return thePooledTransaction;
 	}
 
 	@Override
 	public void occurred() {
 		assertComplete();
-		theAnchor.eventOccurred(//
-			new DBugEventTemplate<>(theDBug.getProcess(), theDBug.getNextEventId(), theAnchor, theType,
-				theAnchor.getDynamicValues().copy().unmodifiable(), theEventProperties.unmodifiable(), false));
+		if (thePool == null) {
+			theAnchor.eventOccurred(createEvent(false));
+			return;
+		}
+		try {
+			theAnchor.eventOccurred(createEvent(false));
+		} finally {
+			release();
+		}
+	}
+
+	private void release() {
+		thePooledEvent.clear();
+		for (int i = 0; i < theEventProperties.keySet().size(); i++)
+			theEventProperties.put(i, null);
+		for (int i = 0; i < thePooledDynamicValues.keySet().size(); i++)
+			thePooledDynamicValues.put(i, null);
+		theSpecifiedParameters.clear();
+		theAnchor = null;
+		// The pool is not thread-safe, so a builder whose transaction is closed on a different thread is just dropped
+		if (Thread.currentThread() == theOwner)
+			thePool.addLast(this);
 	}
 }
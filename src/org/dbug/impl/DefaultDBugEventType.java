@@ -1,19 +1,25 @@
 package org.dbug.impl;
 
+import java.util.ArrayDeque;
 import java.util.Map;
 
 import org.dbug.DBugAnchorType;
+import org.dbug.DBugEventHandle;
 import org.dbug.DBugEventType;
 import org.qommons.collect.QuickSet;
 import org.qommons.collect.QuickSet.QuickMap;
 
 import com.google.common.reflect.TypeToken;
 
-public class DefaultDBugEventType<T> implements DBugEventType<T> {
+public class DefaultDBugEventType<T> implements DBugEventType<T>, DBugEventHandle<T> {
 	private final DefaultDBugAnchorType<T> theAnchorType;
 	private final String theEventName;
 	private final int theEventIndex;
 	private final QuickMap<String, TypeToken<?>> theFields;
+	/** Maps the declared position of each field to its index in {@link #getEventFields()} */
+	private final int[] theFieldQuickIndexes;
+	private final int[] theFieldDeclaredIndexes;
+	private final ThreadLocal<ArrayDeque<DefaultDBugEventBuilder<T>>> theBuilderPool;
 
 	public DefaultDBugEventType(DefaultDBugAnchorType<T> anchorType, String eventName, int eventIndex, Map<String, TypeToken<?>> fields) {
 		theAnchorType = anchorType;
@@ -23,10 +29,35 @@ public class DefaultDBugEventType<T> implements DBugEventType<T> {
 		for (Map.Entry<String, TypeToken<?>> field : fields.entrySet())
 			fieldsMap.put(field.getKey(), field.getValue());
 		theFields = fieldsMap.unmodifiable();
+		theFieldQuickIndexes = new int[fields.size()];
+		theFieldDeclaredIndexes = new int[fields.size()];
+		int i = 0;
+		for (String field : fields.keySet()) {
+			int quickIndex = theFields.keyIndex(field);
+			theFieldQuickIndexes[i] = quickIndex;
+			theFieldDeclaredIndexes[quickIndex] = i;
+			i++;
+		}
+		theBuilderPool = ThreadLocal.withInitial(ArrayDeque::new);
+	}
+
+	/**
+	 * Gets a re-usable event builder from the current thread's pool. Only used if no reporter for the anchor type retains events.
+	 * 
+	 * @param dBug The DBug instance
+	 * @param anchor The anchor to fire the event on
+	 * @return The builder
+	 */
+	DefaultDBugEventBuilder<T> acquireBuilder(DefaultDBug dBug, DefaultDBugAnchor<T> anchor) {
+		ArrayDeque<DefaultDBugEventBuilder<T>> pool = theBuilderPool.get();
+		DefaultDBugEventBuilder<T> builder = pool.pollLast();
+		if (builder == null)
+			builder = new DefaultDBugEventBuilder<>(dBug, this, pool);
+		return builder.reset(anchor);
 	}
 
 	@Override
-	public DBugAnchorType<T> getAnchorType() {
+	public DefaultDBugAnchorType<T> getAnchorType() {
 		return theAnchorType;
 	}
 
@@ -45,6 +76,28 @@ public class DefaultDBugEventType<T> implements DBugEventType<T> {
 		return theFields;
 	}
 
+	@Override
+	public DBugEventType<T> getEventType() {
+		return this;
+	}
+
+	@Override
+	public int getFieldCount() {
+		return theFieldQuickIndexes.length;
+	}
+
+	@Override
+	public int getFieldIndex(String fieldName) throws IllegalArgumentException {
+		int index = theFields.keySet().indexOf(fieldName);
+		if (index < 0)
+			throw new IllegalArgumentException("No such field " + this + "." + fieldName);
+		return theFieldDeclaredIndexes[index];
+	}
+
+	int getFieldQuickIndex(int declaredIndex) {
+		return theFieldQuickIndexes[declaredIndex];
+	}
+
 	@Override
 	public int hashCode() {
 		return theAnchorType.hashCode() * 7 + theEventName.hashCode();
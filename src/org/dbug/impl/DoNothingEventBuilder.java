@@ -20,6 +20,11 @@ class DoNothingEventBuilder implements DBugEventBuilder {
 		return this;
 	}
 
+	@Override
+	public DBugEventBuilder with(int fieldIndex, Object value) {
+		return this;
+	}
+
 	@Override
 	public Transaction begin() {
 		return Transaction.NONE;
@@ -0,0 +1,38 @@
+package org.dbug.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates unique event IDs without contending on a single counter for each ID. Each thread claims a block of IDs from the global
+ * counter and hands them out locally until the block is used up.
+ *
+ * IDs are unique and increase on each thread, but across threads they are only roughly ordered. Events on different threads should be
+ * ordered by their times, not their IDs. Unused IDs in a thread's block when the thread dies are skipped.
+ */
+class EventIdGenerator {
+	private final AtomicLong theSequence;
+	private final int theBlockSize;
+	private final ThreadLocal<Block> theBlocks;
+
+	EventIdGenerator(int blockSize) {
+		if (blockSize <= 0)
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		theSequence = new AtomicLong();
+		theBlockSize = blockSize;
+		theBlocks = ThreadLocal.withInitial(Block::new);
+	}
+
+	long next() {
+		Block block = theBlocks.get();
+		if (block.next == block.limit) {
+			block.next = theSequence.getAndAdd(theBlockSize);
+			block.limit = block.next + theBlockSize;
+		}
+		return block.next++;
+	}
+
+	private static class Block {
+		long next;
+		long limit;
+	}
+}
@@ -1,10 +1,13 @@
 package org.dbug.impl;
 
 import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
 
 import org.dbug.DBugAnchor;
+import org.dbug.DBugAnchorUpdate;
 import org.dbug.DBugAnchorType;
 import org.dbug.DBugEventBuilder;
+import org.dbug.DBugEventHandle;
 import org.qommons.collect.QuickSet.QuickMap;
 
 class PlaceHolderAnchor<T> implements DBugAnchor<T> {
@@ -42,6 +45,13 @@ class PlaceHolderAnchor<T> implements DBugAnchor<T> {
 		return anchor.isActive();
 	}
 
+	@Override
+	public boolean isSubscribed(DBugEventHandle<T> event) {
+		if (!tryRetrieve())
+			return false;
+		return anchor.isSubscribed(event);
+	}
+
 	@Override
 	public QuickMap<String, Object> getStaticValues() {
 		if (!tryRetrieve())
@@ -71,6 +81,13 @@ class PlaceHolderAnchor<T> implements DBugAnchor<T> {
 		return anchor.setDynamicValue(property, value);
 	}
 
+	@Override
+	public <P> P setDynamicValue(int fieldIndex, P value) {
+		if (!tryRetrieve())
+			throw new IllegalStateException("This anchor is not available");
+		return anchor.setDynamicValue(fieldIndex, value);
+	}
+
 	@Override
 	public <P> DBugAnchor<T> modifyDynamicValue(String property, Function<? super P, ? extends P> map) {
 		if (!tryRetrieve())
@@ -78,10 +95,68 @@ class PlaceHolderAnchor<T> implements DBugAnchor<T> {
 		return anchor.modifyDynamicValue(property, map);
 	}
 
+	@Override
+	public DBugAnchorUpdate<T> updates() {
+		if (!tryRetrieve())
+			throw new IllegalStateException("This anchor is not available");
+		return anchor.updates();
+	}
+
+	@Override
+	public long add(String property, long delta) {
+		if (!tryRetrieve())
+			throw new IllegalStateException("This anchor is not available");
+		return anchor.add(property, delta);
+	}
+
+	@Override
+	public long accumulate(String property, long value, LongBinaryOperator op) {
+		if (!tryRetrieve())
+			throw new IllegalStateException("This anchor is not available");
+		return anchor.accumulate(property, value, op);
+	}
+
 	@Override
 	public DBugEventBuilder event(String eventName) {
 		if (!tryRetrieve())
 			return DoNothingEventBuilder.INSTANCE;
 		return anchor.event(eventName);
 	}
+
+	@Override
+	public DBugEventBuilder event(DBugEventHandle<T> event) {
+		if (!tryRetrieve())
+			return DoNothingEventBuilder.INSTANCE;
+		return anchor.event(event);
+	}
+
+	@Override
+	public void fire(DBugEventHandle<T> event) {
+		if (tryRetrieve())
+			anchor.fire(event);
+	}
+
+	@Override
+	public void fire(DBugEventHandle<T> event, Object value0) {
+		if (tryRetrieve())
+			anchor.fire(event, value0);
+	}
+
+	@Override
+	public void fire(DBugEventHandle<T> event, Object value0, Object value1) {
+		if (tryRetrieve())
+			anchor.fire(event, value0, value1);
+	}
+
+	@Override
+	public void fire(DBugEventHandle<T> event, Object value0, Object value1, Object value2) {
+		if (tryRetrieve())
+			anchor.fire(event, value0, value1, value2);
+	}
+
+	@Override
+	public void fire(DBugEventHandle<T> event, Object... values) {
+		if (tryRetrieve())
+			anchor.fire(event, values);
+	}
 }
\ No newline at end of file
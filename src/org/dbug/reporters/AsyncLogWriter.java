@@ -0,0 +1,228 @@
+package org.dbug.reporters;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.qommons.config.QommonsConfig;
+
+/**
+ * Writes lines to a file or to the standard output or error stream from a dedicated thread. Lines are queued in a bounded queue and
+ * written in batches. When the queue is full, lines are dropped and counted rather than blocking the caller, and the number of dropped
+ * lines is written to the output periodically.
+ */
+public class AsyncLogWriter {
+	private static final int MAX_BATCH = 1024;
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private final String theName;
+	private final Path theFile;
+	private final boolean isError;
+	private final long theFlushInterval;
+	private final long theMaxFileSize;
+	private final int theMaxFiles;
+	private final ArrayBlockingQueue<String> theQueue;
+	private final AtomicLong theDropped;
+	private final Thread theThread;
+
+	private FileChannel theChannel;
+	private OutputStream theStdStream;
+	private long theFileSize;
+	private volatile boolean isClosed;
+
+	/**
+	 * Creates a writer from reporter configuration. Supported attributes are:
+	 * <ul>
+	 * <li><b>file</b>: The file to write to. If not specified, the standard output (or error, if <code>error</code> is specified) stream
+	 * is used.</li>
+	 * <li><b>queue-size</b>: The maximum number of lines to queue before dropping them. Default 65536.</li>
+	 * <li><b>flush-interval</b>: The maximum amount of time lines may be queued before being written. Default 100ms.</li>
+	 * <li><b>max-file-size</b>: The size (e.g. <code>10M</code>) after which the file is rotated. Default is no rotation.</li>
+	 * <li><b>max-files</b>: The number of rotated files to keep. Default 5.</li>
+	 * </ul>
+	 * 
+	 * @param name The name for the writer's thread
+	 * @param config The reporter configuration
+	 * @param error Whether to write to the standard error stream instead of standard output if no file is specified
+	 * @return The new writer
+	 */
+	public static AsyncLogWriter configure(String name, QommonsConfig config, boolean error) {
+		String file = config.get("file");
+		int queueSize = config.get("queue-size") == null ? 64 * 1024 : Integer.parseInt(config.get("queue-size"));
+		long flushInterval = config.getTime("flush-interval", 100);
+		long maxFileSize = parseSize(config.get("max-file-size"));
+		int maxFiles = config.get("max-files") == null ? 5 : Integer.parseInt(config.get("max-files"));
+		return new AsyncLogWriter(name, file == null ? null : Paths.get(file), error, queueSize, flushInterval, maxFileSize, maxFiles);
+	}
+
+	public AsyncLogWriter(String name, Path file, boolean error, int queueSize, long flushInterval, long maxFileSize, int maxFiles) {
+		theName = name;
+		theFile = file;
+		isError = error;
+		theFlushInterval = flushInterval <= 0 ? 100 : flushInterval;
+		theMaxFileSize = maxFileSize;
+		theMaxFiles = maxFiles;
+		theQueue = new ArrayBlockingQueue<>(queueSize);
+		theDropped = new AtomicLong();
+		theThread = new Thread(this::run, name + " Writer");
+		theThread.setDaemon(true);
+		theThread.start();
+	}
+
+	/**
+	 * Queues a line to be written. Never blocks.
+	 * 
+	 * @param line The line to write
+	 * @return Whether the line was queued, false if it was dropped
+	 */
+	public boolean write(String line) {
+		if (isClosed || !theQueue.offer(line)) {
+			theDropped.getAndIncrement();
+			return false;
+		}
+		return true;
+	}
+
+	/** @return The total number of lines dropped because the queue was full */
+	public long getDropped() {
+		return theDropped.get();
+	}
+
+	/**
+	 * Writes all queued lines and closes the output. Lines written after this are dropped.
+	 * <p>
+	 * The writer thread is not interrupted, since an interrupt during a write would close the underlying file descriptor. It notices the
+	 * closed flag within one flush interval and exits after draining the queue.
+	 * </p>
+	 */
+	public void close() {
+		isClosed = true;
+		try {
+			theThread.join(theFlushInterval + 1000);
+		} catch (InterruptedException e) {}
+	}
+
+	private void run() {
+		List<String> batch = new ArrayList<>(MAX_BATCH);
+		StringBuilder text = new StringBuilder();
+		long reportedDropped = 0;
+		try {
+			open();
+			while (!isClosed || !theQueue.isEmpty()) {
+				String first;
+				try {
+					first = theQueue.poll(theFlushInterval, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					first = theQueue.poll();
+				}
+				if (first != null) {
+					text.append(first).append(LINE_SEPARATOR);
+					theQueue.drainTo(batch, MAX_BATCH - 1);
+					for (String line : batch)
+						text.append(line).append(LINE_SEPARATOR);
+					batch.clear();
+				}
+				long dropped = theDropped.get();
+				if (dropped != reportedDropped) {
+					text.append("[").append(theName).append("] ").append(dropped - reportedDropped).append(" lines dropped")
+						.append(LINE_SEPARATOR);
+					reportedDropped = dropped;
+				}
+				if (text.length() > 0) {
+					writeFully(StandardCharsets.UTF_8.encode(CharBuffer.wrap(text)));
+					text.setLength(0);
+					if (text.capacity() > 1024 * 1024)
+						text = new StringBuilder();
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Could not write to " + (theFile == null ? (isError ? "System.err" : "System.out") : theFile));
+			e.printStackTrace();
+			isClosed = true;
+		} finally {
+			if (theFile != null && theChannel != null) {
+				try {
+					theChannel.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private void open() throws IOException {
+		if (theFile == null) {
+			// Write directly to the file descriptor to avoid serializing on the PrintStream's lock.
+			// Not through its channel, which is interruptible and would close the JVM's standard stream if the thread were interrupted.
+			theStdStream = new FileOutputStream(isError ? FileDescriptor.err : FileDescriptor.out);
+			return;
+		}
+		if (theFile.getParent() != null)
+			Files.createDirectories(theFile.getParent());
+		theChannel = FileChannel.open(theFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		theFileSize = theChannel.size();
+	}
+
+	private void writeFully(ByteBuffer bytes) throws IOException {
+		if (theStdStream != null) {
+			theStdStream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+			return;
+		}
+		if (theFile != null && theMaxFileSize > 0 && theFileSize > 0 && theFileSize + bytes.remaining() > theMaxFileSize)
+			rotate();
+		while (bytes.hasRemaining())
+			theFileSize += theChannel.write(bytes);
+	}
+
+	private void rotate() throws IOException {
+		theChannel.close();
+		String name = theFile.getFileName().toString();
+		for (int i = theMaxFiles - 1; i >= 1; i--) {
+			Path older = theFile.resolveSibling(name + "." + i);
+			if (Files.exists(older))
+				Files.move(older, theFile.resolveSibling(name + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+		}
+		if (theMaxFiles > 0)
+			Files.move(theFile, theFile.resolveSibling(name + ".1"), StandardCopyOption.REPLACE_EXISTING);
+		else
+			Files.delete(theFile);
+		theChannel = FileChannel.open(theFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		theFileSize = 0;
+	}
+
+	static long parseSize(String size) {
+		if (size == null || size.isEmpty())
+			return 0;
+		size = size.trim().toUpperCase();
+		long multiplier = 1;
+		switch (size.charAt(size.length() - 1)) {
+		case 'K':
+			multiplier = 1024;
+			break;
+		case 'M':
+			multiplier = 1024 * 1024;
+			break;
+		case 'G':
+			multiplier = 1024L * 1024 * 1024;
+			break;
+		}
+		if (multiplier != 1)
+			size = size.substring(0, size.length() - 1).trim();
+		return Long.parseLong(size) * multiplier;
+	}
+}
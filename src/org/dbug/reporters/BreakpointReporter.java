@@ -46,6 +46,11 @@ public class BreakpointReporter implements SimpleDBugEventReporter {
 		throw new IllegalStateException("Unrecognized breakpoint type " + theType);
 	}
 
+	@Override
+	public boolean retainsEvents() {
+		return false;
+	}
+
 	@Override
 	public void close() {}
 }
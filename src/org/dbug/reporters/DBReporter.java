@@ -262,8 +262,8 @@ public class DBReporter implements DBugEventReporter<DBReporter.DBCompiledAnchor
 				+ "process, id, config, anchor) VALUES (" + theProcessId + ", ?, ?, ?)");
 
 			theEventInsert = theConnection.prepareStatement(sql = "INSERT INTO dbug.Event_Instance("//
-				+ "process, id, event_type, anchor, start_time, end_time) VALUES("//
-				+ theProcessId + ", ?, ?, ?, ?, ?)");
+				+ "process, id, event_type, anchor, thread_id, start_time, end_time, parent_event, trace) VALUES("//
+				+ theProcessId + ", ?, ?, ?, ?, ?, ?, ?, ?)");
 			theEventEndUpdate = theConnection.prepareStatement(sql = "UPDATE dbug.Event_Instance SET end_time=?"//
 				+ " WHERE process=" + theProcessId + " AND id=?");
 			theEventValueInsert = theConnection.prepareStatement(sql = "INSERT INTO dbug.Event_Value("//
@@ -777,6 +777,11 @@ public class DBReporter implements DBugEventReporter<DBReporter.DBCompiledAnchor
 							new Date(theEvent.getEnd().toEpochMilli()));
 					else
 						theCompiledAnchor.theCompiledAnchor.theReporter.theEventInsert.setNull(6, Types.TIMESTAMP);
+					if (theEvent.getParentEventId() >= 0)
+						theCompiledAnchor.theCompiledAnchor.theReporter.theEventInsert.setLong(7, theEvent.getParentEventId());
+					else
+						theCompiledAnchor.theCompiledAnchor.theReporter.theEventInsert.setNull(7, Types.BIGINT);
+					theCompiledAnchor.theCompiledAnchor.theReporter.theEventInsert.setLong(8, theEvent.getTraceId());
 					theCompiledAnchor.theCompiledAnchor.theReporter.theEventInsert.execute();
 				}
 				synchronized (theCompiledAnchor.theCompiledAnchor.theReporter.theEventValueInsert) {
@@ -15,6 +15,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 
+import org.dbug.DBugContext;
 import org.dbug.config.DBugConfig.DBugEventConfig;
 import org.dbug.config.DBugConfig.DBugEventValue;
 import org.dbug.config.DBugConfigEvent;
@@ -60,14 +61,12 @@ public class ProfilingReporter implements SimpleDBugEventReporter {
 	private long theResetInterval;
 	private String theIndent = "\t";
 	final Map<QuickMap<String, Object>, ProfileNode> theRoots;
-	private final ThreadLocal<ProfilingThread> theUnfinishedStacks;
 	private final BetterHashMap<DBugEventConfig<?>, EventProfileConfig> theEventDescrip;
 	private volatile long theLastPrint;
 	private long theLastReset;
 
 	public ProfilingReporter() {
 		theRoots = new LinkedHashMap<>();
-		theUnfinishedStacks = ThreadLocal.withInitial(ProfilingThread::new);
 		theEventDescrip = BetterHashMap.build().identity().buildMap();
 	}
 
@@ -90,13 +89,24 @@ public class ProfilingReporter implements SimpleDBugEventReporter {
 
 	@Override
 	public Transaction eventBegun(DBugConfigEvent<?> event) {
-		ProfilingThread pt=theUnfinishedStacks.get();
-		Transaction nodeT= pt.eventBegun(event,
-			theEventDescrip.computeIfAbsent(event.getEventConfig(), ProfilingReporter::buildEventDescrip));
+		EventProfileConfig config = theEventDescrip.computeIfAbsent(event.getEventConfig(), ProfilingReporter::buildEventDescrip);
+		QuickMap<String, Object> group = config.groupValues.keySet().createMap();
+		for (int i = 0; i < group.keySet().size(); i++)
+			group.put(i, config.groupValues.get(i).apply(event));
+		// The parent is the innermost event profiled by this reporter in the current context, which may have been propagated from
+		// another thread
+		ProfileNode parent = (ProfileNode) DBugContext.find(this);
+		ProfileNode node;
+		if (parent == null)
+			node = theRoots.computeIfAbsent(group, g -> new ProfileNode(config, g));
+		else
+			node = parent.within(config, group);
+		Transaction nodeT = node.begin(event);
+		Transaction frame = DBugContext.push(this, node);
 		return ()->{
-			ProfileNode node = pt.theStack.removeLast();
+			frame.close();
 			nodeT.close();
-			boolean finished = pt.theStack.isEmpty();
+			boolean finished = parent == null;
 			if (finished) {
 				synchronized (this) { // Grab the lock now so we don't have to grab it twice
 					mergeFinished(node);
@@ -107,6 +117,11 @@ public class ProfilingReporter implements SimpleDBugEventReporter {
 		};
 	}
 
+	@Override
+	public boolean retainsEvents() {
+		return false;
+	}
+
 	@Override
 	public void close() {
 	}
@@ -391,27 +406,4 @@ public class ProfilingReporter implements SimpleDBugEventReporter {
 				child.print(str, indentAmount + 1, indent);
 		}
 	}
-
-	private class ProfilingThread {
-		final LinkedList<ProfileNode> theStack;
-
-		ProfilingThread() {
-			theStack = new LinkedList<>();
-		}
-
-		Transaction eventBegun(DBugConfigEvent<?> event, EventProfileConfig config) {
-			QuickMap<String, Object> group = config.groupValues.keySet().createMap();
-			for (int i = 0; i < group.keySet().size(); i++)
-				group.put(i, config.groupValues.get(i).apply(event));
-			if (theStack.isEmpty()) {
-				ProfileNode root = theRoots.computeIfAbsent(group, g -> new ProfileNode(config, g));
-				theStack.add(root);
-				return root.begin(event);
-			} else {
-				ProfileNode child = theStack.getLast().within(config, group);
-				theStack.add(child);
-				return child.begin(event);
-			}
-		}
-	}
 }
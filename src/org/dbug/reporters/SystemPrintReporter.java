@@ -1,55 +1,103 @@
 package org.dbug.reporters;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.dbug.DBug;
+import org.dbug.DBugAnchor;
+import org.dbug.DBugContext;
+import org.dbug.DBugEvent;
+import org.dbug.config.DBugConfig;
+import org.dbug.config.DBugConfig.DBugEventConfig;
+import org.dbug.config.DBugConfig.DBugEventValue;
 import org.dbug.config.DBugConfigEvent;
-import org.dbug.config.SimpleDBugEventReporter;
+import org.dbug.config.DBugConfiguredAnchor;
+import org.dbug.config.DBugEventReporter;
+import org.dbug.expression.ConstantExpression;
 import org.qommons.Transaction;
 import org.qommons.collect.QuickSet.QuickMap;
 import org.qommons.config.QommonsConfig;
 
-public class SystemPrintReporter implements SimpleDBugEventReporter {
+public class SystemPrintReporter implements DBugEventReporter<Void, SystemPrintReporter.PrintTemplate, Void, Void, SystemPrintReporter.PrintTemplate> {
 	public static final Pattern PRINT_VAL_REF = Pattern.compile("[$][{](?<name>[a-zA-Z0-9_]+)[}]");
 
-	private final ThreadLocal<Integer> theIndentAmount = ThreadLocal.withInitial(() -> 0);
+	private final ThreadLocal<StringBuilder> theBuffer = ThreadLocal.withInitial(StringBuilder::new);
 
 	private boolean error;
 	private String theIndent = "\t";
+	private AsyncLogWriter theWriter;
 
 	@Override
 	public void configure(QommonsConfig config) {
 		error = config.is("error", false);
 		if (config.get("indent") != null)
 			theIndent = config.get("indent");
+		if (theWriter != null)
+			theWriter.close();
+		theWriter = AsyncLogWriter.configure(getClass().getSimpleName(), config, error);
+	}
+
+	AsyncLogWriter getWriter() {
+		return theWriter;
+	}
+
+	@Override
+	public Void compileForAnchorConfig(DBugConfig<?> anchor) {
+		return null;
+	}
+
+	@Override
+	public PrintTemplate compileForEventConfig(Void compiledConfig, DBugEventConfig<?> event) {
+		return PrintTemplate.compile(event);
+	}
+
+	@Override
+	public Void compileForAnchor(DBugAnchor<?> anchor) {
+		return null;
+	}
+
+	@Override
+	public Void compileForConfiguredAnchor(Void compiledAnchor, Void compiledConfig, DBugConfiguredAnchor<?> anchor) {
+		return null;
+	}
+
+	@Override
+	public PrintTemplate compileForEvent(Void compiledAnchor, PrintTemplate compiledEventType, DBugEvent<?> event) {
+		return compiledEventType;
 	}
 
 	@Override
-	public void eventOccurred(DBugConfigEvent<?> event) {
-		List<Object> sequence = new LinkedList<>();
-		sequence.add(theIndentAmount.get());
-		int printValsIndex = event.getEventConfigValues().keySet().indexOf("printValues");
-		if (printValsIndex >= 0) {
+	public void eventOccurred(DBugConfigEvent<?> event, Void compiledAnchor, PrintTemplate template) {
+		// Indent by the number of events this reporter has begun that enclose this one
+		int indentAmount = DBugContext.depth(this);
+		if (template.theSegments == null) {
+			// The print string is not constant, so it must be parsed for each event
+			int printValsIndex = event.getEventConfigValues().keySet().indexOf("printValues");
 			String printStr = (String) event.getEventConfigValues().get(printValsIndex);
-			PrintedEventWithSpec spec = PrintedEventWithSpec.parse(theIndentAmount.get(), theIndent, printStr, event);
-			DBug.queueAction(() -> (error ? System.err : System.out).println(spec));
-		} else {
-			StringBuilder str = new StringBuilder();
-			indent(str, theIndentAmount.get(), theIndent);
-			printAllValues(str, event);
-			DBug.queueAction(() -> (error ? System.err : System.out).println(str));
+			theWriter.write(PrintedEventWithSpec.parse(indentAmount, theIndent, printStr, event).toString());
+			return;
 		}
+		StringBuilder str = theBuffer.get();
+		str.setLength(0);
+		indent(str, indentAmount, theIndent);
+		if (template == PrintTemplate.ALL)
+			printAllValues(str, event);
+		else
+			template.print(str, event);
+		theWriter.write(str.toString());
+		if (str.capacity() > 16 * 1024)
+			theBuffer.remove(); // Don't hang on to huge buffers
 	}
 
 	@Override
-	public Transaction eventBegun(DBugConfigEvent<?> event) {
-		eventOccurred(event);
-		theIndentAmount.set(theIndentAmount.get() + 1);
-		return () -> theIndentAmount.set(theIndentAmount.get() - 1);
+	public Transaction eventBegun(DBugConfigEvent<?> event, Void compiledAnchor, PrintTemplate template) {
+		eventOccurred(event, compiledAnchor, template);
+		// Only the frame's presence matters, for the depth. The event itself may be re-used after it ends.
+		return DBugContext.push(this, null);
 	}
 
 	private static void indent(StringBuilder str, int amount, String indentStr) {
@@ -58,7 +106,109 @@ public class SystemPrintReporter implements SimpleDBugEventReporter {
 	}
 
 	@Override
-	public void close() {}
+	public boolean retainsEvents() {
+		return false;
+	}
+
+	@Override
+	public void close() {
+		if (theWriter != null)
+			theWriter.close();
+	}
+
+	/** A printValues string pre-parsed into literal text and references resolved by index */
+	static class PrintTemplate {
+		/** Prints all the event's values */
+		static final PrintTemplate ALL = new PrintTemplate(new Object[0]);
+		/** The printValues string is not constant and must be parsed for each event */
+		static final PrintTemplate DYNAMIC = new PrintTemplate(null);
+
+		/** Each segment is either a String or a Function&lt;DBugConfigEvent, Object&gt; */
+		final Object[] theSegments;
+
+		private PrintTemplate(Object[] segments) {
+			theSegments = segments;
+		}
+
+		void print(StringBuilder str, DBugConfigEvent<?> event) {
+			for (Object segment : theSegments) {
+				if (segment instanceof String)
+					str.append((String) segment);
+				else
+					str.append(((Function<DBugConfigEvent<?>, Object>) segment).apply(event));
+			}
+		}
+
+		static PrintTemplate compile(DBugEventConfig<?> eventConfig) {
+			int printValsIndex = eventConfig.eventValues.keySet().indexOf("printValues");
+			if (printValsIndex < 0)
+				return ALL;
+			DBugEventValue<?, ?> printValues = eventConfig.eventValues.get(printValsIndex);
+			if (printValues == null || !(printValues.expression instanceof ConstantExpression))
+				return DYNAMIC;
+			String text = String.valueOf(((ConstantExpression<?, ?>) printValues.expression).value);
+			List<Object> segments = new ArrayList<>();
+			Matcher m = PRINT_VAL_REF.matcher(text);
+			int lastEnd = 0;
+			while (m.find()) {
+				Function<DBugConfigEvent<?>, Object> ref = getReference(eventConfig, m.group("name"));
+				if (ref == null)
+					continue; // Leave unresolvable references in the text
+				if (lastEnd < m.start())
+					segments.add(text.substring(lastEnd, m.start()));
+				segments.add(ref);
+				lastEnd = m.end();
+			}
+			if (lastEnd < text.length())
+				segments.add(text.substring(lastEnd));
+			return new PrintTemplate(segments.toArray());
+		}
+
+		private static Function<DBugConfigEvent<?>, Object> getReference(DBugEventConfig<?> eventConfig, String varName) {
+			switch (varName) {
+			case "value":
+				return event -> event.getAnchor().getValue();
+			case "event":
+				return event -> event.getType().getEventName();
+			case "class":
+				return event -> event.getAnchor().getType().getType().getSimpleName();
+			case "time":
+				return event -> event.getStart();
+			case "eventId":
+				return event -> event.getEventId();
+			case "parentId":
+				return event -> event.getParentEventId();
+			case "traceId":
+				return event -> event.getTraceId();
+			}
+			int index = eventConfig.eventValues.keySet().indexOf(varName);
+			if (index >= 0) {
+				int fIndex = index;
+				return event -> event.getEventConfigValues().get(fIndex);
+			}
+			index = eventConfig.eventType.getEventFields().keySet().indexOf(varName);
+			if (index >= 0) {
+				int fIndex = index;
+				return event -> event.getEventValues().get(fIndex);
+			}
+			index = eventConfig.getConfig().getValues().keySet().indexOf(varName);
+			if (index >= 0) {
+				int fIndex = index;
+				return event -> event.getAnchor().getConfigValues().get(fIndex);
+			}
+			index = eventConfig.eventType.getAnchorType().getDynamicFields().keySet().indexOf(varName);
+			if (index >= 0) {
+				int fIndex = index;
+				return event -> event.getAnchor().getDynamicValues().get(fIndex);
+			}
+			index = eventConfig.eventType.getAnchorType().getStaticFields().keySet().indexOf(varName);
+			if (index >= 0) {
+				int fIndex = index;
+				return event -> event.getAnchor().getStaticValues().get(fIndex);
+			}
+			return null;
+		}
+	}
 
 	static class PrintedEventWithSpec {
 		private final int theIndentAmount;
@@ -90,8 +240,6 @@ public class SystemPrintReporter implements SimpleDBugEventReporter {
 		public String toString() {
 			StringBuilder str = new StringBuilder();
 			indent(str, theIndentAmount, theIndent);
-			for (int i = 0; i < theIndentAmount; i++)
-				str.append(theIndent);
 			Iterator<ReferenceValue> values = theReferences.iterator();
 			int lastValueEnd = 0;
 			while (values.hasNext()) {
@@ -127,6 +275,12 @@ public class SystemPrintReporter implements SimpleDBugEventReporter {
 				return new ReferenceValue(event.getAnchor().getType().getType().getSimpleName(), m.start(), m.end());
 			case "time":
 				return new ReferenceValue(event.getStart(), m.start(), m.end());
+			case "eventId":
+				return new ReferenceValue(event.getEventId(), m.start(), m.end());
+			case "parentId":
+				return new ReferenceValue(event.getParentEventId(), m.start(), m.end());
+			case "traceId":
+				return new ReferenceValue(event.getTraceId(), m.start(), m.end());
 			}
 			QuickMap<String, Object> values = event.getEventConfigValues();
 			int index = values.keySet().indexOf(varName);
@@ -159,6 +313,14 @@ public class SystemPrintReporter implements SimpleDBugEventReporter {
 		str.append(' ');
 		printStandardValue(str, event, "event", true);
 		str.append(' ');
+		printStandardValue(str, event, "eventId", true);
+		if (event.getParentEventId() >= 0) {
+			str.append(' ');
+			printStandardValue(str, event, "parentId", true);
+		}
+		str.append(' ');
+		printStandardValue(str, event, "traceId", true);
+		str.append(' ');
 		for (int i = 0; i < event.getAnchor().getStaticValues().keySet().size(); i++) {
 			str.append(' ');
 			printValue(str, event.getAnchor().getStaticValues(), i, true);
@@ -227,6 +389,21 @@ public class SystemPrintReporter implements SimpleDBugEventReporter {
 				str.append(value).append('=');
 			str.append(event.getStart());
 			break;
+		case "eventId":
+			if (printLabels)
+				str.append(value).append('=');
+			str.append(event.getEventId());
+			break;
+		case "parentId":
+			if (printLabels)
+				str.append(value).append('=');
+			str.append(event.getParentEventId());
+			break;
+		case "traceId":
+			if (printLabels)
+				str.append(value).append('=');
+			str.append(event.getTraceId());
+			break;
 		default:
 			return false;
 		}
@@ -167,12 +167,15 @@ CREATE TABLE dbug.Event_Instance(
 	thread_id BIGINT NOT NULL,
 	start_time TIMESTAMP NOT NULL,
 	end_time TIMESTAMP NULL, --Null if the event has not finished
+	parent_event BIGINT NULL, --The transactional event enclosing this one, null for a root event. May not have been reported.
+	trace BIGINT NOT NULL, --The ID of the root event of the tree this event belongs to
 
 	PRIMARY KEY(process, id),
 	FOREIGN KEY(process) REFERENCES dbug.Process(id),
 	FOREIGN KEY(process, event_type) REFERENCES dbug.Event_Type(process, id),
 	FOREIGN KEY(process, anchor) REFERENCES dbug.Anchor(process, id)
 );
+CREATE INDEX dbug.Event_Instance_By_Trace ON dbug.Event_Instance(process, trace);
 
 CREATE TABLE dbug.Event_Config_Instance(
 	process BIGINT NOT NULL,
@@ -0,0 +1,102 @@
+package org.dbug;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.qommons.Transaction;
+
+public class DBugContextTest {
+	private final Object theOwner = new Object();
+
+	@Test
+	public void testExecutorPropagation() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Object outer = new Object();
+			try (Transaction t = DBugContext.push(theOwner, outer)) {
+				// The submitting code's frames are visible to the task, and the task's own frames nest under them
+				assertSame(outer, executor.submit(DBugContext.wrapCallable(() -> DBugContext.find(theOwner))).get());
+				Object inner = new Object();
+				AtomicReference<Integer> depth = new AtomicReference<>();
+				DBugContext.wrapExecutor(executor).execute(() -> {
+					try (Transaction t2 = DBugContext.push(theOwner, inner)) {
+						depth.set(DBugContext.depth(theOwner));
+					}
+				});
+				assertSame(outer, CompletableFuture.supplyAsync(DBugContext.wrapSupplier(() -> DBugContext.find(theOwner)), executor).get());
+				assertEquals(Integer.valueOf(2), depth.get());
+			}
+			// The executor's thread is left in its own context after each task
+			assertNull(executor.submit(() -> DBugContext.find(theOwner)).get());
+			assertEquals(0, DBugContext.depth(theOwner));
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void testCapturedAfterClose() throws Exception {
+		Object outer = new Object();
+		Runnable task;
+		AtomicReference<Object> found = new AtomicReference<>();
+		try (Transaction t = DBugContext.push(theOwner, outer)) {
+			task = DBugContext.wrap(() -> found.set(DBugContext.find(theOwner)));
+		}
+		// The submitting code has finished, but the task still runs under the frames that enclosed the submission
+		Thread thread = new Thread(task);
+		thread.start();
+		thread.join();
+		assertSame(outer, found.get());
+		assertNull(DBugContext.find(theOwner));
+	}
+
+	@Test
+	public void testOutOfOrderClose() {
+		Object a = new Object();
+		Object b = new Object();
+		Transaction ta = DBugContext.push(theOwner, a);
+		Transaction tb = DBugContext.push(theOwner, b);
+		ta.close();
+		assertSame(b, DBugContext.find(theOwner));
+		assertEquals(1, DBugContext.depth(theOwner));
+		// Closing the top frame also pops the closed frame beneath it
+		tb.close();
+		assertNull(DBugContext.find(theOwner));
+		assertEquals(0, DBugContext.depth(theOwner));
+
+		Object c = new Object();
+		try (Transaction tc = DBugContext.push(theOwner, c)) {
+			assertSame(c, DBugContext.find(theOwner));
+			assertEquals(1, DBugContext.depth(theOwner));
+		}
+		assertEquals(0, DBugContext.depth(theOwner));
+	}
+
+	@Test
+	public void testCloseOnOtherThread() throws Exception {
+		Object a = new Object();
+		Transaction ta = DBugContext.push(theOwner, a);
+		Thread thread = new Thread(ta::close);
+		thread.start();
+		thread.join();
+		assertNull(DBugContext.find(theOwner));
+
+		Object b = new Object();
+		try (Transaction tb = DBugContext.push(theOwner, b)) {
+			assertSame(b, DBugContext.find(theOwner));
+			assertEquals(1, DBugContext.depth(theOwner));
+		}
+		// The frame closed elsewhere is skipped when the frame above it is popped
+		assertNull(DBugContext.find(theOwner));
+		assertEquals(0, DBugContext.depth(theOwner));
+	}
+}
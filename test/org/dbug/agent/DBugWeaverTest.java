@@ -0,0 +1,131 @@
+package org.dbug.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class DBugWeaverTest {
+	public static class Animal {
+		public String name() {
+			return "animal";
+		}
+	}
+
+	public static class Dog extends Animal {
+		@Override
+		public String name() {
+			return "dog";
+		}
+	}
+
+	public static class Cat extends Animal {
+		@Override
+		public String name() {
+			return "cat";
+		}
+	}
+
+	public static class Zoo {
+		public String pick(boolean dog) {
+			// The frame after the branch needs the common super class of Dog and Cat
+			Animal animal;
+			if (dog)
+				animal = new Dog();
+			else
+				animal = new Cat();
+			return animal.name();
+		}
+	}
+
+	/** Defines the given classes itself (rather than delegating to its parent), optionally hiding some from resource lookup */
+	private static class IsolatingLoader extends ClassLoader {
+		private final Map<String, byte[]> theClasses;
+		private final List<String> theHidden;
+
+		IsolatingLoader(Map<String, byte[]> classes, String... hidden) {
+			super(DBugWeaverTest.class.getClassLoader());
+			theClasses = classes;
+			theHidden = new ArrayList<>();
+			for (String h : hidden)
+				theHidden.add(h.replace('.', '/') + ".class");
+		}
+
+		@Override
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			byte[] bytes = theClasses.get(name);
+			if (bytes == null)
+				return super.loadClass(name, resolve);
+			Class<?> c = findLoadedClass(name);
+			if (c == null)
+				c = defineClass(name, bytes, 0, bytes.length);
+			return c;
+		}
+
+		@Override
+		public URL getResource(String name) {
+			return theHidden.contains(name) ? null : super.getResource(name);
+		}
+	}
+
+	private static byte[] bytes(Class<?> clazz) throws IOException {
+		try (InputStream in = clazz.getClassLoader().getResourceAsStream(clazz.getName().replace('.', '/') + ".class")) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) >= 0)
+				out.write(buffer, 0, read);
+			return out.toByteArray();
+		}
+	}
+
+	private static DBugWeaver weaver() {
+		List<WovenMethod> methods = new ArrayList<>();
+		WovenClass woven = new WovenClass(null, Zoo.class.getName(), "weaver-test", Collections.unmodifiableList(methods));
+		methods.add(new WovenMethod(woven, 0, "pick", null, "pick"));
+		return new DBugWeaver(Collections.singletonMap(Zoo.class.getName(), methods));
+	}
+
+	private static Map<String, byte[]> originals() throws IOException {
+		Map<String, byte[]> classes = new HashMap<>();
+		for (Class<?> c : new Class<?>[] { Animal.class, Dog.class, Cat.class, Zoo.class })
+			classes.put(c.getName(), bytes(c));
+		return classes;
+	}
+
+	@Test
+	public void testFramesFromLoader() throws Exception {
+		Map<String, byte[]> classes = originals();
+		IsolatingLoader loader = new IsolatingLoader(classes);
+		byte[] woven = weaver().transform(loader, Zoo.class.getName().replace('.', '/'), null, null, classes.get(Zoo.class.getName()));
+		assertNotNull(woven);
+		classes.put(Zoo.class.getName(), woven);
+
+		// Loading verifies the computed frames
+		Class<?> zooClass = loader.loadClass(Zoo.class.getName());
+		Object zoo = zooClass.newInstance();
+		Method pick = zooClass.getMethod("pick", boolean.class);
+		assertEquals("dog", pick.invoke(zoo, true));
+		assertEquals("cat", pick.invoke(zoo, false));
+	}
+
+	@Test
+	public void testMissingSuperType() throws Exception {
+		// Frames can't be computed correctly without the class hierarchy, so the class is left alone
+		Map<String, byte[]> classes = originals();
+		IsolatingLoader loader = new IsolatingLoader(classes, Cat.class.getName());
+		assertNull(weaver().transform(loader, Zoo.class.getName().replace('.', '/'), null, null, classes.get(Zoo.class.getName())));
+	}
+}
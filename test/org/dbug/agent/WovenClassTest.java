@@ -0,0 +1,55 @@
+package org.dbug.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class WovenClassTest {
+	public static class Service {
+		public void start() {}
+
+		public void stop() {}
+	}
+
+	public static class SubService extends Service {}
+
+	private static WovenClass weave(String... methodNames) {
+		List<WovenMethod> methods = new ArrayList<>();
+		WovenClass woven = new WovenClass(null, Service.class.getName(), "weave-test", Collections.unmodifiableList(methods));
+		for (String name : methodNames)
+			methods.add(new WovenMethod(woven, methods.size(), name, null, name));
+		return woven;
+	}
+
+	@Test
+	public void testEditedWeave() {
+		WovenClass original = weave("start");
+		WovenClass.WovenType originalType = original.getType(Service.class);
+		assertEquals(1, originalType.handles.length);
+
+		// As if the config were edited to weave another method and re-parsed
+		WovenClass edited = weave("start", "stop");
+		WovenClass.WovenType editedType = edited.getType(Service.class);
+		assertNotSame(originalType.anchorType, editedType.anchorType);
+		assertEquals(2, editedType.handles.length);
+		assertEquals("stop", editedType.handles[1].getEventType().getEventName());
+
+		// Re-parsing an identical weave reuses the anchor type
+		assertSame(originalType.anchorType, weave("start").getType(Service.class).anchorType);
+	}
+
+	@Test
+	public void testSubType() {
+		WovenClass woven = weave("start");
+		// Sub-types share the woven class's anchor type
+		assertSame(woven.getType(Service.class).anchorType, woven.getType(SubService.class).anchorType);
+		assertNull(woven.getType(String.class));
+	}
+}
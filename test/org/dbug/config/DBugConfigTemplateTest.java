@@ -0,0 +1,32 @@
+package org.dbug.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Collections;
+
+import org.dbug.config.DBugConfigTemplate.DBugConfigTemplateValue;
+import org.dbug.config.DBugConfigTemplate.DBugEventConfigTemplate;
+import org.junit.Test;
+import org.qommons.collect.QuickSet;
+import org.qommons.collect.QuickSet.QuickMap;
+
+public class DBugConfigTemplateTest {
+	private static final QuickMap<String, DBugConfigTemplateValue> VALUES = QuickSet.of(Collections.<String> emptyList()).createMap();
+	private static final QuickMap<String, DBugEventConfigTemplate> EVENTS = QuickSet.of(Collections.<String> emptyList()).createMap();
+
+	private static DBugConfigTemplate template(long evalBudget, boolean asyncVariables, boolean sampleConditions) {
+		return new DBugConfigTemplate("id", "schema", "my.Class", VALUES, null, Collections.emptyList(), EVENTS, evalBudget, asyncVariables,
+			sampleConditions);
+	}
+
+	@Test
+	public void testEquals() {
+		assertEquals(template(1000, true, true), template(1000, true, true));
+		assertEquals(template(1000, true, true).hashCode(), template(1000, true, true).hashCode());
+		assertFalse(template(1000, true, true).equals(template(2000, true, true)));
+		assertFalse(template(1000, true, true).equals(template(1000, false, true)));
+		// A reloaded config that only changes whether conditions are sampled must be re-applied
+		assertFalse(template(1000, true, true).equals(template(1000, true, false)));
+	}
+}
@@ -0,0 +1,56 @@
+package org.dbug.expression;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class DBugPurityTest {
+	@Test
+	public void testImmutableInstanceMethods() throws NoSuchMethodException {
+		assertTrue(DBugPurity.isPure(String.class.getMethod("substring", int.class, int.class)));
+		assertTrue(DBugPurity.isPure(String.class.getMethod("length")));
+		assertTrue(DBugPurity.isPure(Integer.class.getMethod("intValue")));
+		assertTrue(DBugPurity.isPure(BigInteger.class.getMethod("add", BigInteger.class)));
+		assertTrue(DBugPurity.isPure(UUID.class.getMethod("getMostSignificantBits")));
+	}
+
+	@Test
+	public void testImmutableStaticMethods() throws NoSuchMethodException {
+		assertTrue(DBugPurity.isPure(Integer.class.getMethod("parseInt", String.class)));
+		assertTrue(DBugPurity.isPure(Integer.class.getMethod("valueOf", int.class)));
+		assertTrue(DBugPurity.isPure(Long.class.getMethod("toHexString", long.class)));
+		assertTrue(DBugPurity.isPure(UUID.class.getMethod("fromString", String.class)));
+		assertTrue(DBugPurity.isPure(Math.class.getMethod("max", int.class, int.class)));
+	}
+
+	@Test
+	public void testGlobalStateNotPure() throws NoSuchMethodException {
+		assertFalse(DBugPurity.isPure(UUID.class.getMethod("randomUUID")));
+		assertFalse(DBugPurity.isPure(Integer.class.getMethod("getInteger", String.class)));
+		assertFalse(DBugPurity.isPure(Long.class.getMethod("getLong", String.class)));
+		assertFalse(DBugPurity.isPure(Boolean.class.getMethod("getBoolean", String.class)));
+		assertFalse(DBugPurity.isPure(String.class.getMethod("format", String.class, Object[].class)));
+		assertFalse(DBugPurity.isPure(Math.class.getMethod("random")));
+	}
+
+	@Test
+	public void testMutableValuesNotPure() throws NoSuchMethodException {
+		// Streams and arrays
+		assertFalse(DBugPurity.isPure(String.class.getMethod("chars")));
+		assertFalse(DBugPurity.isPure(String.class.getMethod("codePoints")));
+		assertFalse(DBugPurity.isPure(String.class.getMethod("toCharArray")));
+		// Arguments that may be mutable
+		assertFalse(DBugPurity.isPure(String.class.getMethod("valueOf", char[].class)));
+		assertFalse(DBugPurity.isPure(String.class.getMethod("contentEquals", CharSequence.class)));
+	}
+
+	@Test
+	public void testNonValueTypeNotPure() throws NoSuchMethodException {
+		assertFalse(DBugPurity.isPure(StringBuilder.class.getMethod("length")));
+		assertFalse(DBugPurity.isPure(Object.class.getMethod("toString")));
+	}
+}
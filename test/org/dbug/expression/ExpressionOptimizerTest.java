@@ -0,0 +1,177 @@
+package org.dbug.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.dbug.config.DBugConfigEvent;
+import org.dbug.config.DBugConfiguredAnchor;
+import org.junit.Test;
+import org.observe.util.TypeTokens;
+
+import com.google.common.reflect.TypeToken;
+
+public class ExpressionOptimizerTest {
+	private static final Method SUBSTRING;
+	private static final Method LIST_SIZE;
+
+	static {
+		try {
+			SUBSTRING = String.class.getMethod("substring", int.class);
+			LIST_SIZE = List.class.getMethod("size");
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Test
+	public void testMethodCallsShared() {
+		// Built separately, as they would be for two expressions in a config
+		Expression<Object, String> call1 = substring(new Variable<>("s", TypeTokens.get().STRING), 1);
+		Expression<Object, String> call2 = substring(new Variable<>("s", TypeTokens.get().STRING), 1);
+		assertNotSame(call1, call2);
+		assertEquals(call1, call2);
+		assertEquals(call1.hashCode(), call2.hashCode());
+
+		ExpressionOptimizer<Object> optimizer = new ExpressionOptimizer<Object>().scan(call1).scan(call2);
+		assertTrue(optimizer.hasCommonExpressions());
+		Expression<Object, String> shared1 = optimizer.share(call1);
+		assertTrue(shared1 instanceof SharedExpression);
+		assertSame(shared1, optimizer.share(call2));
+	}
+
+	@Test
+	public void testDifferentArgsNotShared() {
+		Expression<Object, String> call1 = substring(new Variable<>("s", TypeTokens.get().STRING), 1);
+		Expression<Object, String> call2 = substring(new Variable<>("s", TypeTokens.get().STRING), 2);
+		assertFalse(call1.equals(call2));
+
+		ExpressionOptimizer<Object> optimizer = new ExpressionOptimizer<Object>().scan(call1).scan(call2);
+		assertFalse(optimizer.hasCommonExpressions());
+		assertFalse(optimizer.share(call1) instanceof SharedExpression);
+		assertFalse(optimizer.share(call2) instanceof SharedExpression);
+		assertEquals(call2, optimizer.share(call2));
+	}
+
+	@Test
+	public void testFoldMath() {
+		Expression<Object, ?> product = ExpressionOptimizer.simplify(BinaryMathExpression.binaryOp(constant(6), constant(7), "*"));
+		assertTrue(product instanceof ConstantExpression);
+		assertEquals(42, ((ConstantExpression<Object, ?>) product).value);
+	}
+
+	@Test
+	public void testFoldNested() {
+		Expression<Object, ?> sum = BinaryMathExpression.binaryOp(constant(1), constant(2), "+");
+		Expression<Object, ?> product = ExpressionOptimizer.simplify(BinaryMathExpression.binaryOp(sum, constant(3), "*"));
+		assertTrue(product instanceof ConstantExpression);
+		assertEquals(9, ((ConstantExpression<Object, ?>) product).value);
+	}
+
+	@Test
+	public void testDivideByZeroNotFolded() {
+		Expression<Object, ?> quotient = BinaryMathExpression.binaryOp(constant(1), constant(0), "/");
+		// Left for evaluation, where the error will be reported
+		assertSame(quotient, ExpressionOptimizer.simplify(quotient));
+	}
+
+	@Test
+	public void testBooleanIdentity() {
+		Variable<Boolean> flag = new Variable<>("flag", TypeTokens.get().BOOLEAN);
+		assertSame(flag, ExpressionOptimizer.simplify(BinaryMathExpression.binaryOp(ConstantExpression.TRUE(), flag, "&&")));
+		assertSame(flag, ExpressionOptimizer.simplify(BinaryMathExpression.binaryOp(flag, ConstantExpression.FALSE(), "||")));
+
+		Expression<Object, ?> shortCircuit = ExpressionOptimizer
+			.simplify(BinaryMathExpression.binaryOp(ConstantExpression.FALSE(), flag, "&&"));
+		assertEquals(ConstantExpression.FALSE(), shortCircuit);
+	}
+
+	@Test
+	public void testConstantConditional() {
+		Variable<String> yes = new Variable<>("yes", TypeTokens.get().STRING);
+		Variable<String> no = new Variable<>("no", TypeTokens.get().STRING);
+		assertSame(yes, ExpressionOptimizer
+			.simplify(new ConditionalExpression<>(TypeTokens.get().STRING, ConstantExpression.TRUE(), yes, no)));
+		assertSame(no, ExpressionOptimizer
+			.simplify(new ConditionalExpression<>(TypeTokens.get().STRING, ConstantExpression.FALSE(), yes, no)));
+	}
+
+	@Test
+	public void testFoldPureMethod() {
+		Expression<Object, String> call = substring(new ConstantExpression<>(TypeTokens.get().STRING, "abc"), 1);
+		Expression<Object, String> folded = ExpressionOptimizer.simplify(call);
+		assertTrue(folded instanceof ConstantExpression);
+		assertEquals("bc", ((ConstantExpression<Object, String>) folded).value);
+	}
+
+	@Test
+	public void testImpureMethodNotFolded() {
+		// A list's size may change, so the call must not be folded even if the list is constant
+		Expression<Object, Integer> call = new MethodExpression<>(
+			new ConstantExpression<>(new TypeToken<List<String>>() {}, Arrays.asList("a", "b")), new Expression[0], LIST_SIZE);
+		assertSame(call, ExpressionOptimizer.simplify(call));
+	}
+
+	@Test
+	public void testRandomUUIDNotFolded() throws NoSuchMethodException {
+		Expression<Object, UUID> call = new MethodExpression<>(new ConstantExpression<>(TypeTokens.get().of(UUID.class), null),
+			new Expression[0], UUID.class.getMethod("randomUUID"));
+		assertSame(call, ExpressionOptimizer.simplify(call));
+	}
+
+	private static Expression<Object, String> substring(Expression<Object, String> source, int begin) {
+		return new MethodExpression<>(source, new Expression[] { constant(begin) }, SUBSTRING);
+	}
+
+	private static ConstantExpression<Object, Integer> constant(int value) {
+		return new ConstantExpression<>(TypeTokens.get().of(Integer.class), value);
+	}
+
+	/** A stand-in for a non-constant value, such as an anchor field */
+	private static class Variable<T> implements Expression<Object, T> {
+		private final String theName;
+		private final TypeToken<T> theType;
+
+		Variable(String name, TypeToken<T> type) {
+			theName = name;
+			theType = type;
+		}
+
+		@Override
+		public TypeToken<T> getResultType() {
+			return theType;
+		}
+
+		@Override
+		public T evaluate(DBugConfigEvent<Object> event) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Expression<Object, ? extends T> given(DBugConfiguredAnchor<Object> anchor, boolean evalDynamic, boolean cacheable) {
+			return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return theName.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Variable && theName.equals(((Variable<?>) obj).theName);
+		}
+
+		@Override
+		public String toString() {
+			return theName;
+		}
+	}
+}
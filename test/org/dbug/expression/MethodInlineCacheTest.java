@@ -0,0 +1,139 @@
+package org.dbug.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MethodInlineCacheTest {
+	static class Base {
+		String name(String suffix) {
+			return "base" + suffix;
+		}
+	}
+
+	static class Sub1 extends Base {
+		@Override
+		String name(String suffix) {
+			return "sub1" + suffix;
+		}
+	}
+
+	static class Sub2 extends Base {
+		@Override
+		String name(String suffix) {
+			return "sub2" + suffix;
+		}
+	}
+
+	static class Sub3 extends Sub1 {}
+
+	static class Sub4 extends Base {
+		@Override
+		String name(String suffix) {
+			return "sub4" + suffix;
+		}
+	}
+
+	static class Sub5 extends Base {
+		@Override
+		String name(String suffix) {
+			return "sub5" + suffix;
+		}
+	}
+
+	interface Shape {
+		int sides();
+
+		default String describe() {
+			return sides() + " sides";
+		}
+	}
+
+	static class Triangle implements Shape {
+		@Override
+		public int sides() {
+			return 3;
+		}
+	}
+
+	static class Square implements Shape {
+		@Override
+		public int sides() {
+			return 4;
+		}
+
+		@Override
+		public String describe() {
+			return "square";
+		}
+	}
+
+	private static MethodInlineCache cache(Class<?> type, String method, Class<?>... params) throws NoSuchMethodException {
+		return new MethodInlineCache(type.getDeclaredMethod(method, params));
+	}
+
+	@Test
+	public void testMonomorphic() throws Exception {
+		MethodInlineCache cache = cache(Base.class, "name", String.class);
+		for (int i = 0; i < 3; i++)
+			assertEquals("sub1!", cache.invoke(new Sub1(), new Object[] { "!" }));
+		assertEquals(1, cache.getPolymorphism());
+		assertFalse(cache.isMegamorphic());
+	}
+
+	@Test
+	public void testPolymorphic() throws Exception {
+		MethodInlineCache cache = cache(Base.class, "name", String.class);
+		for (int i = 0; i < 2; i++) {
+			assertEquals("base.", cache.invoke(new Base(), new Object[] { "." }));
+			assertEquals("sub1.", cache.invoke(new Sub1(), new Object[] { "." }));
+			assertEquals("sub2.", cache.invoke(new Sub2(), new Object[] { "." }));
+			// Inherits Sub1's implementation
+			assertEquals("sub1.", cache.invoke(new Sub3(), new Object[] { "." }));
+		}
+		assertEquals(MethodInlineCache.MAX_POLYMORPHISM, cache.getPolymorphism());
+		assertFalse(cache.isMegamorphic());
+	}
+
+	@Test
+	public void testMegamorphic() throws Exception {
+		MethodInlineCache cache = cache(Base.class, "name", String.class);
+		Base[] receivers = new Base[] { new Base(), new Sub1(), new Sub2(), new Sub3(), new Sub4(), new Sub5() };
+		String[] expected = new String[] { "base", "sub1", "sub2", "sub1", "sub4", "sub5" };
+		for (int i = 0; i < 2; i++) {
+			for (int r = 0; r < receivers.length; r++)
+				assertEquals(expected[r] + "?", cache.invoke(receivers[r], new Object[] { "?" }));
+		}
+		assertTrue(cache.isMegamorphic());
+		assertEquals(0, cache.getPolymorphism());
+	}
+
+	@Test
+	public void testInterfaceReceiver() throws Exception {
+		MethodInlineCache sides = cache(Shape.class, "sides");
+		MethodInlineCache describe = cache(Shape.class, "describe");
+		for (int i = 0; i < 2; i++) {
+			assertEquals(3, sides.invoke(new Triangle(), new Object[0]));
+			assertEquals(4, sides.invoke(new Square(), new Object[0]));
+			// Triangle uses the default method
+			assertEquals("3 sides", describe.invoke(new Triangle(), new Object[0]));
+			assertEquals("square", describe.invoke(new Square(), new Object[0]));
+		}
+		assertEquals(2, sides.getPolymorphism());
+		assertEquals(2, describe.getPolymorphism());
+	}
+
+	@Test
+	public void testStatic() throws Exception {
+		MethodInlineCache cache = cache(Integer.class, "parseInt", String.class);
+		assertEquals(42, cache.invoke(null, new Object[] { "42" }));
+		assertEquals(0, cache.getPolymorphism());
+	}
+
+	@Test(expected = DBugParseException.class)
+	public void testException() throws Exception {
+		cache(Integer.class, "parseInt", String.class).invoke(null, new Object[] { "not a number" });
+	}
+}
@@ -0,0 +1,156 @@
+package org.dbug.gen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.dbug.DBugAnchor;
+import org.dbug.DBugAnchorType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DBugSchemaProcessorTest {
+	private static final String SCHEMA = String.join("\n", //
+		"package test.schema;", //
+		"", //
+		"import org.dbug.gen.*;", //
+		"", //
+		"@DBugSchema(value = \"test\", anchor = String.class)", //
+		"public interface Request {", //
+		"	org.dbug.DBugAnchor<String> getAnchor();", //
+		"", //
+		"	@DBugField", //
+		"	void setStatus(int status);", //
+		"", //
+		"	void fireStarted();", //
+		"", //
+		"	@DBugEvent(\"done\")", //
+		"	void finish(long duration, String result);", //
+		"}");
+
+	private Path theDir;
+
+	@Before
+	public void setUp() throws IOException {
+		theDir = Files.createTempDirectory("dbug-gen");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(theDir)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void testGeneratedAnchor() throws Exception {
+		String errors = compile("test/schema/Request.java", SCHEMA);
+		assertEquals("", errors);
+
+		String generated = new String(Files.readAllBytes(theDir.resolve("test/schema/RequestAnchor.java")), StandardCharsets.UTF_8);
+		assertTrue(generated,
+			generated.contains(".withExternalDynamicField(\"status\", com.google.common.reflect.TypeToken.of(java.lang.Integer.class))"));
+		assertTrue(generated, generated.contains(".withEvent(\"started\", eb -> {})"));
+		assertTrue(generated,
+			generated.contains(".withEventField(\"duration\", com.google.common.reflect.TypeToken.of(java.lang.Long.class))"));
+		// Events are fired through pre-resolved handles, and only if someone is listening
+		assertTrue(generated, generated.contains("TYPE.eventHandle(\"done\")"));
+		assertTrue(generated, generated.contains("if (this.theAnchor.isSubscribed("));
+
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { theDir.toUri().toURL() }, getClass().getClassLoader())) {
+			// Not initialized, since that would declare the anchor type
+			Class<?> anchorClass = Class.forName("test.schema.RequestAnchor", false, loader);
+			assertTrue(Modifier.isFinal(anchorClass.getModifiers()));
+			assertTrue(Class.forName("test.schema.Request", false, loader).isAssignableFrom(anchorClass));
+			Field type = anchorClass.getField("TYPE");
+			assertTrue(Modifier.isStatic(type.getModifiers()));
+			assertEquals(DBugAnchorType.class, type.getType());
+			// The external field's initial value is a parameter of the factory
+			Method debug = anchorClass.getMethod("debug", String.class, int.class);
+			assertTrue(Modifier.isStatic(debug.getModifiers()));
+			assertEquals(anchorClass, debug.getReturnType());
+			assertEquals(DBugAnchor.class, anchorClass.getMethod("getAnchor").getReturnType());
+			anchorClass.getMethod("setStatus", int.class);
+			anchorClass.getMethod("fireStarted");
+			anchorClass.getMethod("finish", long.class, String.class);
+		}
+	}
+
+	@Test
+	public void testFieldSetByIndex() throws IOException {
+		assertEquals("", compile("test/schema/Request.java", SCHEMA));
+		String generated = new String(Files.readAllBytes(theDir.resolve("test/schema/RequestAnchor.java")), StandardCharsets.UTF_8);
+		assertTrue(generated, generated.contains("private static final int STATUS_FIELD = TYPE.getDynamicFields().keyIndex(\"status\");"));
+		assertTrue(generated, generated.contains("this.theAnchor.setDynamicValue(RequestAnchor.STATUS_FIELD, status);"));
+		assertFalse(generated, generated.contains("setDynamicValue(\""));
+	}
+
+	@Test
+	public void testArrayEventParameter() throws IOException {
+		String errors = compile("test/schema/Request.java", SCHEMA.replace("\tvoid fireStarted();", //
+			"\tvoid fireStarted();\n\n\t@DBugEvent(\"tagged\")\n\tvoid tag(String[] tags);\n\n"
+				+ "\t@DBugEvent(\"copied\")\n\tvoid copy(String[] from, String[] to);"));
+		assertEquals("", errors);
+		String generated = new String(Files.readAllBytes(theDir.resolve("test/schema/RequestAnchor.java")), StandardCharsets.UTF_8);
+		// A lone array must be a single event value, not the varargs array
+		assertTrue(generated, generated.contains("this.theAnchor.fire(RequestAnchor.TAGGED, (Object) tags);"));
+		assertTrue(generated, generated.contains("this.theAnchor.fire(RequestAnchor.COPIED, from, to);"));
+	}
+
+	@Test
+	public void testNotInterface() throws IOException {
+		String errors = compile("test/schema/Request.java", SCHEMA.replace("public interface Request", "public abstract class Request"));
+		assertTrue(errors, errors.contains("may only be applied to interfaces"));
+		assertFalse(Files.exists(theDir.resolve("test/schema/RequestAnchor.java")));
+	}
+
+	@Test
+	public void testUnannotatedMethod() throws IOException {
+		String errors = compile("test/schema/Request.java", SCHEMA.replace("\tvoid fireStarted();", "\tvoid started();"));
+		assertTrue(errors, errors.contains("DBug schema methods must be annotated"));
+	}
+
+	@Test
+	public void testFieldParameters() throws IOException {
+		String errors = compile("test/schema/Request.java",
+			SCHEMA.replace("void setStatus(int status);", "void setStatus(int status, int code);"));
+		assertTrue(errors, errors.contains("must take exactly one parameter"));
+	}
+
+	/** @return The compiler's output, which is empty if the source compiled with no errors or warnings */
+	private String compile(String fileName, String source) throws IOException {
+		Path file = theDir.resolve(fileName);
+		Files.createDirectories(file.getParent());
+		Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		StringWriter output = new StringWriter();
+		try (StandardJavaFileManager files = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+			compiler.getTask(output, files, null, //
+				Arrays.asList("-d", theDir.toString(), "-s", theDir.toString(), //
+					"-classpath", System.getProperty("java.class.path"), //
+					"-processor", DBugSchemaProcessor.class.getName()), //
+				null, files.getJavaFileObjects(file.toFile())).call();
+		}
+		return output.toString();
+	}
+}
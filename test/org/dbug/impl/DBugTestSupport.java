@@ -0,0 +1,122 @@
+package org.dbug.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.dbug.DBug;
+import org.dbug.config.DBugConfigTemplate;
+import org.dbug.config.DBugConfigTemplate.DBugConfigTemplateValue;
+import org.dbug.config.DBugConfigTemplate.DBugEventConfigTemplate;
+import org.dbug.config.DBugEventReporter;
+import org.dbug.expression.DBugAntlrExpression;
+import org.dbug.expression.DBugParseException;
+import org.dbug.expression.ExternalExpressionSpec;
+import org.qommons.collect.QuickSet;
+import org.qommons.collect.QuickSet.QuickMap;
+
+/**
+ * Creates DBug instances and configs for tests. Anchors are only active while DBug has a config file, so an empty one is used, and configs
+ * are added in code, which doesn't need the expression parser.
+ */
+public class DBugTestSupport {
+	static final String SCHEMA = "test";
+
+	private static File theConfigFile;
+
+	/** The anchor value type for tests */
+	public static class Widget {
+		private final String theName;
+
+		public Widget(String name) {
+			theName = name;
+		}
+
+		@Override
+		public String toString() {
+			return theName;
+		}
+	}
+
+	/**
+	 * The condition for test configs
+	 * 
+	 * @param widget The anchor value
+	 * @return True, so that every anchor is active
+	 */
+	public static boolean isActive(Widget widget) {
+		return true;
+	}
+
+	/**
+	 * @return A new DBug instance with an empty config file
+	 * @throws IOException If the config file could not be written
+	 */
+	static synchronized DefaultDBug createDBug() throws IOException {
+		if (theConfigFile == null) {
+			theConfigFile = File.createTempFile("dbug", ".xml");
+			theConfigFile.deleteOnExit();
+			Files.write(theConfigFile.toPath(), "<dbug>\n\t<reporters />\n</dbug>\n".getBytes(StandardCharsets.UTF_8));
+		}
+		System.setProperty(DBug.class.getName() + ".config", theConfigFile.getPath());
+		return new DefaultDBug();
+	}
+
+	/**
+	 * Adds a config for the test {@link Widget} anchor type that is active for all anchors
+	 * 
+	 * @param dBug The DBug instance to add the config to
+	 * @param reporter The reporter for the config's events
+	 * @param events The names of the events to report
+	 * @throws DBugParseException If the condition could not be created
+	 */
+	static void addConfig(DefaultDBug dBug, DBugEventReporter<?, ?, ?, ?, ?> reporter, String... events) throws DBugParseException {
+		addConfig(dBug, reporter, Collections.emptyMap(), Collections.emptyMap(), null, 0, false, events);
+	}
+
+	/**
+	 * Like {@link #addConfig(DefaultDBug, DBugEventReporter, String...)}, with variables and an event condition. Expressions are given as
+	 * references to static methods (e.g. <code>my.pkg.MyClass.method(value)</code>).
+	 * 
+	 * @param dBug The DBug instance to add the config to
+	 * @param reporter The reporter for the config's events
+	 * @param anchorVariables The (uncached) anchor variables for the config, by name
+	 * @param eventVariables The variables for each event, by name, as references to static methods (e.g.
+	 *        <code>my.pkg.MyClass.method(value)</code>)
+	 * @param eventCondition The condition for each event, or null
+	 * @param evalBudget The evaluation budget for the config, in nanoseconds
+	 * @param asyncVariables Whether to evaluate the event variables on DBug's reporting thread
+	 * @param events The names of the events to report
+	 * @throws DBugParseException If the condition or a variable could not be created
+	 */
+	static void addConfig(DefaultDBug dBug, DBugEventReporter<?, ?, ?, ?, ?> reporter, Map<String, String> anchorVariables,
+		Map<String, String> eventVariables, String eventCondition, long evalBudget, boolean asyncVariables, String... events)
+		throws DBugParseException {
+		List<DBugEventReporter<?, ?, ?, ?, ?>> reporters = Collections.singletonList(reporter);
+		DBugAntlrExpression condition = new ExternalExpressionSpec(null, DBugTestSupport.class.getName() + ".isActive(value)");
+		DBugConfigTemplate[] template = new DBugConfigTemplate[1];
+		QuickMap<String, DBugEventConfigTemplate> eventTemplates = QuickSet.of(Arrays.asList(events)).createMap();
+		for (String event : events) {
+			QuickMap<String, DBugAntlrExpression> variables = QuickSet.of(eventVariables.keySet()).createMap();
+			for (Map.Entry<String, String> variable : eventVariables.entrySet())
+				variables.put(variable.getKey(), new ExternalExpressionSpec(null, variable.getValue()));
+			eventTemplates.put(event, new DBugEventConfigTemplate(reporters, event, variables.unmodifiable(),
+				eventCondition == null ? null : new ExternalExpressionSpec(null, eventCondition), Collections.emptyList(), template));
+		}
+		QuickMap<String, DBugConfigTemplateValue> values = QuickSet.of(anchorVariables.keySet()).createMap();
+		for (Map.Entry<String, String> variable : anchorVariables.entrySet())
+			values.put(variable.getKey(),
+				new DBugConfigTemplateValue(variable.getKey(), new ExternalExpressionSpec(null, variable.getValue()), false));
+		template[0] = new DBugConfigTemplate("test", SCHEMA, Widget.class.getName(), values.unmodifiable(), condition, reporters,
+			eventTemplates, evalBudget, asyncVariables, false);
+		StringBuilder errors = new StringBuilder();
+		dBug.addConfig(template[0], err -> errors.append(err).append('\n'));
+		if (errors.length() > 0)
+			throw new IllegalStateException(errors.toString());
+	}
+}
@@ -0,0 +1,289 @@
+package org.dbug.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dbug.DBugAnchor;
+import org.dbug.DBugAnchorType;
+import org.dbug.config.ExpressionCost;
+import org.dbug.expression.DBugParseException;
+import org.dbug.impl.DBugTestSupport.Widget;
+import org.junit.Before;
+import org.junit.Test;
+import org.observe.util.TypeTokens;
+
+public class DefaultDBugAnchorTest {
+	private DefaultDBug theDBug;
+	private RecordingReporter theReporter;
+	private DBugAnchorType<Widget> theType;
+
+	@Before
+	public void setUp() throws Exception {
+		theDBug = DBugTestSupport.createDBug();
+		theReporter = new RecordingReporter(true);
+		theType = declare(theDBug, theReporter);
+	}
+
+	private static DBugAnchorType<Widget> declare(DefaultDBug dBug, RecordingReporter reporter) throws DBugParseException {
+		DBugAnchorType<Widget> type = dBug.declare(DBugTestSupport.SCHEMA, Widget.class, builder -> builder//
+			.withDynamicField("count", TypeTokens.get().of(Integer.class), w -> 0)//
+			.withDynamicField("total", TypeTokens.get().of(Long.class), w -> null)//
+			.withDynamicField("ratio", TypeTokens.get().of(Double.class), w -> 0.5));
+		DBugTestSupport.addConfig(dBug, reporter, "ANCHOR_ACTIVE", "VALUE_UPDATE");
+		return type;
+	}
+
+	@Test
+	public void testCounterBoxing() {
+		DBugAnchor<Widget> anchor = theType.debug(new Widget("a")).build();
+		assertTrue(anchor.isActive());
+		assertEquals(5, anchor.add("count", 5));
+		assertEquals(6, anchor.increment("count"));
+		// The value must keep the field's type
+		assertEquals(Integer.valueOf(6), anchor.getDynamicValues().get("count"));
+
+		// A null value starts at zero
+		assertEquals(3, anchor.add("total", 3));
+		assertEquals(Long.valueOf(3), anchor.getDynamicValues().get("total"));
+
+		assertEquals(10, anchor.accumulate("count", 10, Math::max));
+		assertEquals(Integer.valueOf(10), anchor.getDynamicValues().get("count"));
+	}
+
+	@Test
+	public void testConcurrentAdd() throws InterruptedException {
+		DBugAnchor<Widget> anchor = theType.debug(new Widget("a")).build();
+		int threadCount = 8;
+		int adds = 10_000;
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < threadCount; t++) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < adds; i++)
+					anchor.increment("count");
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals(Integer.valueOf(threadCount * adds), anchor.getDynamicValues().get("count"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNonIntegralCounter() {
+		theType.debug(new Widget("a")).build().add("ratio", 1);
+	}
+
+	@Test
+	public void testCounterOverflow() {
+		DBugAnchor<Widget> anchor = theType.debug(new Widget("a")).build();
+		anchor.setDynamicValue("count", Integer.MAX_VALUE - 1);
+		assertEquals(Integer.MAX_VALUE, anchor.increment("count"));
+		try {
+			anchor.increment("count");
+			fail("int counter wrapped");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		assertEquals(Integer.valueOf(Integer.MAX_VALUE), anchor.getDynamicValues().get("count"));
+		try {
+			anchor.accumulate("count", 2, (a, b) -> a * b);
+			fail("int counter wrapped");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		assertEquals(Integer.MAX_VALUE, anchor.add("count", 0));
+
+		anchor.setDynamicValue("total", Long.MIN_VALUE + 1);
+		assertEquals(Long.MIN_VALUE, anchor.add("total", -1));
+		try {
+			anchor.add("total", -1);
+			fail("long counter wrapped");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		assertEquals(Long.valueOf(Long.MIN_VALUE), anchor.getDynamicValues().get("total"));
+	}
+
+	@Test
+	public void testSetRacingFirstAdd() throws InterruptedException {
+		for (int i = 0; i < 500; i++) {
+			DBugAnchor<Widget> anchor = theType.debug(new Widget("a" + i)).build();
+			CountDownLatch start = new CountDownLatch(1);
+			Thread setter = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				anchor.setDynamicValue("count", 100);
+			});
+			setter.start();
+			start.countDown();
+			// The first add creates the counter, seeded from the field's current value
+			anchor.increment("count");
+			setter.join();
+			// Either the add came first and the set overwrote it, or the set came first and the add built on it
+			Object count = anchor.getDynamicValues().get("count");
+			assertTrue("Lost update: " + count, count.equals(100) || count.equals(101));
+		}
+	}
+
+	@Test
+	public void testSetCounter() {
+		DBugAnchor<Widget> anchor = theType.debug(new Widget("a")).build();
+		anchor.add("count", 5);
+		// Setting a counter writes through it, so later adds start from the new value
+		assertEquals(Integer.valueOf(5), anchor.setDynamicValue("count", 100));
+		assertEquals(101, anchor.increment("count"));
+		assertEquals(Integer.valueOf(101), anchor.getDynamicValues().get("count"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetCounterNonIntegral() {
+		DBugAnchor<Widget> anchor = theType.debug(new Widget("a")).build();
+		anchor.increment("count");
+		anchor.setDynamicValue("count", 1.5);
+	}
+
+	@Test
+	public void testBatchUpdate() {
+		DBugAnchor<Widget> anchor = theType.debug(new Widget("a")).build();
+		anchor.updates().set("count", 1).set("ratio", 2.0).commit();
+		List<RecordingReporter.Recorded> updates = theReporter.getEvents("VALUE_UPDATE");
+		assertEquals(1, updates.size());
+		assertEquals(new LinkedHashSet<>(Arrays.asList("count", "ratio")), updates.get(0).values.get("fields"));
+
+		// Without coalescing, each separate change is its own update
+		anchor.setDynamicValue("count", 2);
+		anchor.setDynamicValue("count", 3);
+		assertEquals(3, theReporter.getEvents("VALUE_UPDATE").size());
+	}
+
+	@Test
+	public void testCoalescedUpdates() throws Exception {
+		DefaultDBug dBug;
+		System.setProperty(theDBug.updateCoalesceProperty, "500");
+		try {
+			dBug = DBugTestSupport.createDBug();
+		} finally {
+			System.clearProperty(theDBug.updateCoalesceProperty);
+		}
+		RecordingReporter reporter = new RecordingReporter(true);
+		DBugAnchor<Widget> anchor = declare(dBug, reporter).debug(new Widget("a")).build();
+		anchor.setDynamicValue("count", 1);
+		anchor.setDynamicValue("ratio", 2.0);
+		anchor.setDynamicValue("count", 0); // Changed back within the window, so not an update
+		assertTrue(reporter.getEvents("VALUE_UPDATE").isEmpty());
+
+		List<RecordingReporter.Recorded> updates = reporter.await("VALUE_UPDATE", 1, 5000);
+		assertEquals(1, updates.size());
+		assertEquals(new LinkedHashSet<>(Arrays.asList("ratio")), updates.get(0).values.get("fields"));
+		assertEquals("ratio", updates.get(0).values.get("field"));
+		Thread.sleep(600);
+		assertEquals(1, reporter.getEvents("VALUE_UPDATE").size());
+	}
+
+	private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+	/**
+	 * An event variable for tests
+	 * 
+	 * @param widget The anchor value
+	 * @return A different value every time it is evaluated
+	 */
+	public static int nextSequence(Widget widget) {
+		return SEQUENCE.incrementAndGet();
+	}
+
+	@Test
+	public void testDemotedEventVariable() throws Exception {
+		DefaultDBug dBug = DBugTestSupport.createDBug();
+		RecordingReporter reporter = new RecordingReporter(true);
+		DBugAnchorType<Widget> type = dBug.declare(DBugTestSupport.SCHEMA, Widget.class,
+			builder -> builder.withDynamicField("count", TypeTokens.get().of(Integer.class), w -> 0));
+		// Any evaluation is over a budget of 1ns, so the variable is demoted the first time it is timed
+		DBugTestSupport.addConfig(dBug, reporter, Collections.emptyMap(),
+			Collections.singletonMap("seq", DefaultDBugAnchorTest.class.getName() + ".nextSequence(value)"), null, 1, false, "VALUE_UPDATE");
+		DBugAnchor<Widget> anchor = type.debug(new Widget("a")).build();
+		for (int i = 1; i <= 200; i++)
+			anchor.setDynamicValue("count", i);
+
+		List<RecordingReporter.Recorded> events = reporter.getEvents("VALUE_UPDATE");
+		assertEquals(200, events.size());
+		Set<Object> seen = new HashSet<>();
+		int skipped = 0;
+		for (RecordingReporter.Recorded event : events) {
+			Object seq = event.variables.get("seq");
+			if (seq == null)
+				skipped++;
+			else // A value from a previous event must not be reported again
+				assertTrue("Stale value reported: " + event, seen.add(seq));
+		}
+		assertTrue("Variable was not demoted", skipped > 0);
+		assertTrue("Variable was never sampled after demotion", seen.size() > ExpressionCost.SAMPLE_INTERVAL);
+	}
+
+	private static final AtomicInteger CONFIG_VALUE_EVALUATIONS = new AtomicInteger();
+
+	/**
+	 * An anchor variable for tests
+	 * 
+	 * @param widget The anchor value
+	 * @return The number of times this has been called
+	 */
+	public static int countEvaluation(Widget widget) {
+		return CONFIG_VALUE_EVALUATIONS.incrementAndGet();
+	}
+
+	/**
+	 * An event condition for tests
+	 * 
+	 * @param count The anchor's count field
+	 * @return Whether the count is odd
+	 */
+	public static boolean isOdd(Integer count) {
+		return count % 2 != 0;
+	}
+
+	@Test
+	public void testRejectedEventNotCopied() throws Exception {
+		DefaultDBug dBug = DBugTestSupport.createDBug();
+		RecordingReporter reporter = new RecordingReporter(true);
+		DBugAnchorType<Widget> type = dBug.declare(DBugTestSupport.SCHEMA, Widget.class,
+			builder -> builder.withDynamicField("count", TypeTokens.get().of(Integer.class), w -> 0));
+		DBugTestSupport.addConfig(dBug, reporter,
+			Collections.singletonMap("evaluations", DefaultDBugAnchorTest.class.getName() + ".countEvaluation(value)"),
+			Collections.emptyMap(), DefaultDBugAnchorTest.class.getName() + ".isOdd(count)", 0, false, "VALUE_UPDATE");
+		DBugAnchor<Widget> anchor = type.debug(new Widget("a")).build();
+
+		// The anchor's config values are only captured (evaluating the uncached variable) for events that pass the condition
+		int evaluations = CONFIG_VALUE_EVALUATIONS.get();
+		for (int i = 2; i <= 200; i += 2)
+			anchor.setDynamicValue("count", i);
+		assertEquals(0, reporter.getEvents("VALUE_UPDATE").size());
+		assertEquals(evaluations, CONFIG_VALUE_EVALUATIONS.get());
+
+		anchor.setDynamicValue("count", 201);
+		assertEquals(1, reporter.getEvents("VALUE_UPDATE").size());
+		assertEquals(evaluations + 1, CONFIG_VALUE_EVALUATIONS.get());
+	}
+}
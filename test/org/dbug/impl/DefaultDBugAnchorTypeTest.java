@@ -0,0 +1,123 @@
+package org.dbug.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.dbug.DBugAnchor;
+import org.dbug.DBugAnchorType;
+import org.dbug.expression.DBugParseException;
+import org.dbug.impl.DBugTestSupport.Widget;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DefaultDBugAnchorTypeTest {
+	private DefaultDBug theDBug;
+	private RecordingReporter theReporter;
+	private DBugAnchorType<Widget> theType;
+
+	@Before
+	public void setUp() throws Exception {
+		theDBug = DBugTestSupport.createDBug();
+		theReporter = new RecordingReporter(true);
+		theType = theDBug.declare(DBugTestSupport.SCHEMA, Widget.class, builder -> {});
+	}
+
+	@Test
+	public void testDeclareSameBuilderClass() {
+		// Every call declares through the same lambda class
+		DBugAnchorType<Widget> type1 = declare("started");
+		DBugAnchorType<Widget> type2 = declare("started", "stopped");
+		assertNotSame(type1, type2);
+		assertFalse(type1.equals(type2));
+		assertEquals("stopped", type2.eventHandle("stopped").getEventType().getEventName());
+		assertSame(type1, declare("started"));
+		assertSame(type2, declare("started", "stopped"));
+	}
+
+	private DBugAnchorType<Widget> declare(String... events) {
+		return theDBug.declare(DBugTestSupport.SCHEMA, Widget.class, builder -> {
+			for (String event : events)
+				builder.withEvent(event, null);
+		});
+	}
+
+	@Test
+	public void testDebugAllUnconfigured() {
+		List<Widget> widgets = widgets(3);
+		List<DBugAnchor<Widget>> anchors = theType.debugAll(widgets);
+		assertEquals(widgets.size(), anchors.size());
+		for (DBugAnchor<Widget> anchor : anchors)
+			assertFalse(anchor.isActive());
+	}
+
+	@Test
+	public void testDebugAll() throws Exception {
+		DBugTestSupport.addConfig(theDBug, theReporter, "ANCHOR_ACTIVE");
+		List<Widget> widgets = widgets(100);
+		List<DBugAnchor<Widget>> anchors = theType.debugAll(widgets);
+		assertEquals(widgets.size(), anchors.size());
+		for (int i = 0; i < widgets.size(); i++) {
+			assertTrue(anchors.get(i).isActive());
+			assertSame(widgets.get(i), anchors.get(i).getValue());
+			// The anchors are registered like any other
+			assertSame(anchors.get(i), theType.debug(widgets.get(i)).build());
+		}
+
+		// Each anchor's activation is a separate event
+		List<RecordingReporter.Recorded> activeEvents = theReporter.getEvents("ANCHOR_ACTIVE");
+		assertEquals(widgets.size(), activeEvents.size());
+		Set<Long> eventIds = new HashSet<>();
+		for (RecordingReporter.Recorded event : activeEvents) {
+			assertEquals(Boolean.TRUE, event.values.get("active"));
+			assertTrue("Duplicate event ID " + event.eventId, eventIds.add(event.eventId));
+		}
+	}
+
+	@Test
+	public void testDebugAllConfigAddedMidBatch() throws Exception {
+		DBugTestSupport.addConfig(theDBug, theReporter, "ANCHOR_ACTIVE");
+		RecordingReporter lateReporter = new RecordingReporter(true);
+		List<Widget> widgets = widgets(10);
+		// Adds a config while the batch is half-created
+		Iterable<Widget> values = () -> new Iterator<Widget>() {
+			private int theIndex;
+
+			@Override
+			public boolean hasNext() {
+				return theIndex < widgets.size();
+			}
+
+			@Override
+			public Widget next() {
+				if (theIndex == widgets.size() / 2) {
+					try {
+						DBugTestSupport.addConfig(theDBug, lateReporter, "ANCHOR_ACTIVE");
+					} catch (DBugParseException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+				return widgets.get(theIndex++);
+			}
+		};
+		theType.debugAll(values);
+		assertEquals(widgets.size(), theReporter.getEvents("ANCHOR_ACTIVE").size());
+		// The anchors created before the add pick it up like any registered anchor; the ones after must resolve it themselves
+		assertEquals(widgets.size(), lateReporter.getEvents("ANCHOR_ACTIVE").size());
+	}
+
+	private static List<Widget> widgets(int count) {
+		List<Widget> widgets = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			widgets.add(new Widget("w" + i));
+		return widgets;
+	}
+}
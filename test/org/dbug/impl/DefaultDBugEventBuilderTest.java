@@ -0,0 +1,132 @@
+package org.dbug.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.dbug.DBugAnchor;
+import org.dbug.DBugAnchorType;
+import org.dbug.DBugContext;
+import org.dbug.DBugEventBuilder;
+import org.dbug.impl.DBugTestSupport.Widget;
+import org.junit.Test;
+import org.observe.util.TypeTokens;
+import org.qommons.Transaction;
+
+public class DefaultDBugEventBuilderTest {
+	private RecordingReporter theReporter;
+
+	private DBugAnchor<Widget> createAnchor(boolean retaining) throws Exception {
+		DefaultDBug dBug = DBugTestSupport.createDBug();
+		theReporter = new RecordingReporter(retaining);
+		DefaultDBugAnchorType<Widget> type = (DefaultDBugAnchorType<Widget>) dBug.declare(DBugTestSupport.SCHEMA, Widget.class,
+			builder -> builder.withEvent("request", eb -> eb.withEventField("id", TypeTokens.get().of(Integer.class))));
+		DBugTestSupport.addConfig(dBug, theReporter, "request");
+		assertEquals(retaining, type.isRetainingEvents());
+		return type.debug(new Widget("a")).build();
+	}
+
+	@Test
+	public void testPooledBuilderReuse() throws Exception {
+		DBugAnchor<Widget> anchor = createAnchor(false);
+		DBugEventBuilder builder = anchor.event("request");
+		builder.with("id", 1).occurred();
+		// The builder was released when its event occurred
+		assertSame(builder, anchor.event("request"));
+		builder.with("id", 2).occurred();
+
+		// Builders in use must not be shared
+		DBugEventBuilder builder1 = anchor.event("request");
+		DBugEventBuilder builder2 = anchor.event("request");
+		assertNotSame(builder1, builder2);
+		builder1.with("id", 3).occurred();
+		builder2.with("id", 4).occurred();
+
+		// Events are re-used, so the reporter must have been given each event's own values
+		List<RecordingReporter.Recorded> events = theReporter.getEvents("request");
+		assertEquals(4, events.size());
+		for (int i = 0; i < events.size(); i++)
+			assertEquals(i + 1, events.get(i).values.get("id"));
+	}
+
+	@Test
+	public void testPooledTransaction() throws Exception {
+		DBugAnchor<Widget> anchor = createAnchor(false);
+		DBugEventBuilder builder = anchor.event("request");
+		Transaction t = builder.with("id", 1).begin();
+		// The builder isn't released until the event's transaction is closed
+		assertNotSame(builder, anchor.event("request"));
+		t.close();
+		assertSame(builder, anchor.event("request"));
+
+		List<RecordingReporter.Recorded> events = theReporter.getEvents("request");
+		assertEquals(1, events.size());
+		assertTrue(events.get(0).transactional);
+	}
+
+	@Test
+	public void testDoubleClose() throws Exception {
+		DBugAnchor<Widget> anchor = createAnchor(false);
+		Transaction t = anchor.event("request").with("id", 1).begin();
+		t.close();
+		t.close();
+		// If the second close released the builder again, it would be in the pool twice and be given out to both of these
+		assertNotSame(anchor.event("request"), anchor.event("request"));
+	}
+
+	/**
+	 * An event variable for tests
+	 * 
+	 * @param widget The anchor value
+	 * @return The ID of the innermost transactional event enclosing the evaluation
+	 */
+	public static long enclosingEventId(Widget widget) {
+		return DBugContext.currentEventId();
+	}
+
+	@Test
+	public void testDeferredVariables() throws Exception {
+		DefaultDBug dBug = DBugTestSupport.createDBug();
+		theReporter = new RecordingReporter(true);
+		DBugAnchorType<Widget> type = dBug.declare(DBugTestSupport.SCHEMA, Widget.class,
+			builder -> builder.withEvent("request", eb -> eb.withEventField("id", TypeTokens.get().of(Integer.class))));
+		DBugTestSupport.addConfig(dBug, theReporter, Collections.emptyMap(),
+			Collections.singletonMap("enclosing", DefaultDBugEventBuilderTest.class.getName() + ".enclosingEventId(value)"), null, 0, true,
+			"request");
+		DBugAnchor<Widget> anchor = type.debug(new Widget("a")).build();
+
+		// Hold up the reporting thread until the event's builder has been changed and its enclosing event has ended
+		CountDownLatch hold = new CountDownLatch(1);
+		dBug.queueAction(() -> {
+			try {
+				hold.await();
+			} catch (InterruptedException e) {}
+		});
+		try (Transaction t = anchor.event("request").with("id", 1).begin()) {
+			// Retained events aren't pooled, so the builder may be used again after its event occurs
+			DBugEventBuilder builder = anchor.event("request");
+			builder.with("id", 2).occurred();
+			builder.with("id", 3);
+		}
+		hold.countDown();
+
+		List<RecordingReporter.Recorded> events = theReporter.await("request", 2, 5000);
+		assertEquals(2, events.size());
+		// The deferred event is reported with its values and context as of when it occurred
+		assertEquals(2, events.get(1).values.get("id"));
+		assertEquals(events.get(0).eventId, events.get(1).variables.get("enclosing"));
+	}
+
+	@Test
+	public void testRetainedNotPooled() throws Exception {
+		DBugAnchor<Widget> anchor = createAnchor(true);
+		DBugEventBuilder builder = anchor.event("request");
+		builder.with("id", 1).occurred();
+		assertNotSame(builder, anchor.event("request"));
+	}
+}
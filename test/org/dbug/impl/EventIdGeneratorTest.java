@@ -0,0 +1,57 @@
+package org.dbug.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class EventIdGeneratorTest {
+	private static final int THREADS = 8;
+	private static final int IDS_PER_THREAD = 10_000;
+
+	@Test
+	public void testUniqueAcrossThreads() throws InterruptedException {
+		EventIdGenerator generator = new EventIdGenerator(64);
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		List<Throwable> errors = new ArrayList<>();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+					long last = -1;
+					for (int i = 0; i < IDS_PER_THREAD; i++) {
+						long id = generator.next();
+						assertTrue("IDs must increase on each thread", id > last);
+						assertTrue("Duplicate ID " + id, ids.add(id));
+						last = id;
+					}
+				} catch (Throwable e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads)
+			thread.join();
+		if (!errors.isEmpty())
+			throw new AssertionError(errors.get(0));
+		assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadBlockSize() {
+		new EventIdGenerator(0);
+	}
+}
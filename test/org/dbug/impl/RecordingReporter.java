@@ -0,0 +1,150 @@
+package org.dbug.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dbug.DBugAnchor;
+import org.dbug.DBugEvent;
+import org.dbug.config.DBugConfig;
+import org.dbug.config.DBugConfig.DBugEventConfig;
+import org.dbug.config.DBugConfigEvent;
+import org.dbug.config.DBugConfiguredAnchor;
+import org.dbug.config.DBugEventReporter;
+import org.qommons.Transaction;
+import org.qommons.collect.QuickSet.QuickMap;
+import org.qommons.config.QommonsConfig;
+
+/** A reporter for tests that copies each event it is given, since events may be re-used after they are reported */
+class RecordingReporter implements DBugEventReporter<Object, Object, Object, Object, Object> {
+	static class Recorded {
+		final String eventName;
+		final long eventId;
+		final Map<String, Object> values;
+		/** The values of the config's event variables */
+		final Map<String, Object> variables;
+		final boolean transactional;
+
+		Recorded(DBugConfigEvent<?> event, boolean transactional) {
+			eventName = event.getType().getEventName();
+			eventId = event.getEventId();
+			Map<String, Object> values = new LinkedHashMap<>();
+			QuickMap<String, Object> eventValues = event.getEventValues();
+			for (int i = 0; i < eventValues.keySet().size(); i++)
+				values.put(eventValues.keySet().get(i), eventValues.get(i));
+			this.values = Collections.unmodifiableMap(values);
+			Map<String, Object> variables = new LinkedHashMap<>();
+			QuickMap<String, Object> configValues = event.getEventConfigValues();
+			for (int i = 0; i < configValues.keySet().size(); i++)
+				variables.put(configValues.keySet().get(i), configValues.get(i));
+			this.variables = Collections.unmodifiableMap(variables);
+			this.transactional = transactional;
+		}
+
+		@Override
+		public String toString() {
+			return eventName + "#" + eventId + values;
+		}
+	}
+
+	private final boolean isRetaining;
+	private final List<Recorded> theEvents;
+
+	RecordingReporter(boolean retaining) {
+		isRetaining = retaining;
+		theEvents = new ArrayList<>();
+	}
+
+	/**
+	 * @param eventName The name of the event type
+	 * @return All events of the given type reported so far
+	 */
+	List<Recorded> getEvents(String eventName) {
+		List<Recorded> events = new ArrayList<>();
+		synchronized (theEvents) {
+			for (Recorded event : theEvents) {
+				if (event.eventName.equals(eventName))
+					events.add(event);
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * Waits for events reported from DBug's reporting thread
+	 * 
+	 * @param eventName The name of the event type
+	 * @param count The number of events to wait for
+	 * @param timeout The maximum time to wait, in milliseconds
+	 * @return All events of the given type reported so far, which may be fewer than <code>count</code> if the timeout was reached
+	 * @throws InterruptedException If the thread is interrupted while waiting
+	 */
+	List<Recorded> await(String eventName, int count, long timeout) throws InterruptedException {
+		long end = System.currentTimeMillis() + timeout;
+		List<Recorded> events = getEvents(eventName);
+		while (events.size() < count && System.currentTimeMillis() < end) {
+			Thread.sleep(5);
+			events = getEvents(eventName);
+		}
+		return events;
+	}
+
+	void clear() {
+		synchronized (theEvents) {
+			theEvents.clear();
+		}
+	}
+
+	@Override
+	public void configure(QommonsConfig config) {}
+
+	@Override
+	public Object compileForAnchorConfig(DBugConfig<?> anchor) {
+		return null;
+	}
+
+	@Override
+	public Object compileForEventConfig(Object compiledConfig, DBugEventConfig<?> event) {
+		return null;
+	}
+
+	@Override
+	public Object compileForAnchor(DBugAnchor<?> anchor) {
+		return null;
+	}
+
+	@Override
+	public Object compileForConfiguredAnchor(Object compiledAnchor, Object compiledConfig, DBugConfiguredAnchor<?> anchor) {
+		return null;
+	}
+
+	@Override
+	public Object compileForEvent(Object compiledAnchor, Object compiledEventType, DBugEvent<?> event) {
+		return null;
+	}
+
+	@Override
+	public void eventOccurred(DBugConfigEvent<?> event, Object compiledAnchor, Object compiledEvent) {
+		synchronized (theEvents) {
+			theEvents.add(new Recorded(event, false));
+		}
+	}
+
+	@Override
+	public Transaction eventBegun(DBugConfigEvent<?> event, Object compiledAnchor, Object compiledEvent) {
+		synchronized (theEvents) {
+			theEvents.add(new Recorded(event, true));
+		}
+		return Transaction.NONE;
+	}
+
+	@Override
+	public boolean retainsEvents() {
+		return isRetaining;
+	}
+
+	@Override
+	public void close() {}
+}
@@ -0,0 +1,55 @@
+package org.dbug.reporters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+import org.qommons.config.QommonsConfig;
+
+public class AsyncLogWriterTest {
+	private static final int LINES = 50_000;
+
+	@Test
+	public void testCloseFlushesQueue() throws IOException {
+		Path file = Files.createTempFile("dbug-log", ".txt");
+		try {
+			AsyncLogWriter writer = new AsyncLogWriter("test", file, false, LINES, 10, 0, 0);
+			for (int i = 0; i < LINES; i++)
+				assertEquals(true, writer.write("line " + i));
+			writer.close();
+			List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+			assertEquals(LINES, lines.size());
+			assertEquals("line 0", lines.get(0));
+			assertEquals("line " + (LINES - 1), lines.get(LINES - 1));
+			assertFalse(writer.write("after close"));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void testReconfigureKeepsSystemOut() throws IOException {
+		Path configFile = Files.createTempFile("dbug-print", ".xml");
+		try {
+			Files.write(configFile, "<print />".getBytes(StandardCharsets.UTF_8));
+			QommonsConfig config = QommonsConfig.fromXml(QommonsConfig.toUrl(configFile.toString()));
+			SystemPrintReporter reporter = new SystemPrintReporter();
+			for (int i = 0; i < 5; i++) {
+				reporter.configure(config); // Closes the previous writer
+				for (int j = 0; j < 200; j++)
+					reporter.getWriter().write("");
+			}
+			reporter.close();
+		} finally {
+			Files.deleteIfExists(configFile);
+		}
+		System.out.println("System.out still works");
+		assertFalse("System.out was closed", System.out.checkError());
+	}
+}